@@ -0,0 +1,148 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.GameConfig;
+import com.romeo.game.LoadConfigurationFile;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates square game configurations in the shape of the bundled config.json for any grid and symbol count
+ */
+public final class BenchmarkConfigs {
+
+    // The bonus symbols of the bundled configuration, used unchanged by every generated configuration
+    static final String[] BONUS_SYMBOLS = {"10x", "5x", "+1000", "+500", "MISS"};
+
+    // The largest same_symbols count generated, keeping the combinations within the evaluator's limit
+    private static final int MAX_SAME_SYMBOL_COUNT = 20;
+
+    private BenchmarkConfigs() {
+    }
+
+    /**
+     * Returns the number of standard symbols of a configuration size
+     *
+     * @param configSize "small" for the 6 symbols of config.json, "large" for 24 symbols
+     * @return The number of standard symbols
+     */
+    static int standardSymbolCount(String configSize) {
+        return switch (configSize) {
+            case "small" -> 6;
+            case "large" -> 24;
+            default -> throw new IllegalArgumentException("Unknown config size: " + configSize);
+        };
+    }
+
+    /**
+     * Returns the name of a generated standard symbol
+     *
+     * @param index The symbol index
+     * @return The symbol name
+     */
+    static String standardSymbol(int index) {
+        return "S" + index;
+    }
+
+    /**
+     * Loads a generated configuration
+     *
+     * @param size            The number of rows and columns
+     * @param standardSymbols The number of standard symbols
+     * @return The loaded configuration
+     */
+    static GameConfig load(int size, int standardSymbols) {
+        try {
+            return LoadConfigurationFile.loadConfig(new StringReader(generate(size, standardSymbols)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates the JSON document of a configuration with probabilities for every cell, same_symbols
+     * combinations and horizontal, vertical and diagonal linear combinations
+     *
+     * @param size            The number of rows and columns
+     * @param standardSymbols The number of standard symbols
+     * @return The JSON configuration
+     */
+    static String generate(int size, int standardSymbols) {
+        var json = new StringBuilder(64 * 1024);
+        json.append("{\n\"columns\": ").append(size).append(",\n\"rows\": ").append(size).append(",\n");
+
+        json.append("\"symbols\": {\n");
+        for (int i = 0; i < standardSymbols; i++) {
+            json.append("\"").append(standardSymbol(i)).append("\": {\"reward_multiplier\": ")
+                    .append(standardSymbols - i).append(", \"type\": \"standard\"},\n");
+        }
+        json.append("""
+                "10x": {"reward_multiplier": 10, "type": "bonus", "impact": "multiply_reward"},
+                "5x": {"reward_multiplier": 5, "type": "bonus", "impact": "multiply_reward"},
+                "+1000": {"extra": 1000, "type": "bonus", "impact": "extra_bonus"},
+                "+500": {"extra": 500, "type": "bonus", "impact": "extra_bonus"},
+                "MISS": {"type": "bonus", "impact": "miss"}
+                },
+                """);
+
+        json.append("\"probabilities\": {\n\"standard_symbols\": [\n");
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < size; column++) {
+                json.append(row + column == 0 ? "" : ",\n").append("{\"column\": ").append(column)
+                        .append(", \"row\": ").append(row).append(", \"symbols\": {");
+                for (int i = 0; i < standardSymbols; i++) {
+                    json.append(i == 0 ? "" : ", ").append("\"").append(standardSymbol(i)).append("\": ")
+                            .append(i + 1);
+                }
+                json.append("}}");
+            }
+        }
+        json.append("""
+                ],
+                "bonus_symbols": {"symbols": {"10x": 1, "5x": 2, "+1000": 3, "+500": 4, "MISS": 5}}
+                },
+                """);
+
+        json.append("\"win_combinations\": {\n");
+        List<String> combinations = new ArrayList<>();
+        for (int count = 3; count <= Math.min(size * size, MAX_SAME_SYMBOL_COUNT); count++) {
+            combinations.add("\"same_symbol_" + count + "_times\": {\"reward_multiplier\": " + (count - 2)
+                    + ", \"when\": \"same_symbols\", \"count\": " + count + ", \"group\": \"same_symbols\"}");
+        }
+        combinations.add(linear("same_symbols_horizontally", 2, "horizontally_linear_symbols",
+                areas(size, (line, i) -> line + ":" + i, size)));
+        combinations.add(linear("same_symbols_vertically", 2, "vertically_linear_symbols",
+                areas(size, (line, i) -> i + ":" + line, size)));
+        combinations.add(linear("same_symbols_diagonally_left_to_right", 5, "ltr_diagonally_linear_symbols",
+                areas(size, (line, i) -> i + ":" + i, 1)));
+        combinations.add(linear("same_symbols_diagonally_right_to_left", 5, "rtl_diagonally_linear_symbols",
+                areas(size, (line, i) -> i + ":" + (size - 1 - i), 1)));
+        json.append(String.join(",\n", combinations));
+        return json.append("\n}\n}\n").toString();
+    }
+
+    private interface CellName {
+        String of(int line, int index);
+    }
+
+    private static String areas(int size, CellName cellName, int lines) {
+        List<String> areas = new ArrayList<>();
+        for (int line = 0; line < lines; line++) {
+            List<String> cells = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                cells.add("\"" + cellName.of(line, i) + "\"");
+            }
+            areas.add("[" + String.join(", ", cells) + "]");
+        }
+        return "[" + String.join(", ", areas) + "]";
+    }
+
+    private static String linear(String key, int rewardMultiplier, String group, String coveredAreas) {
+        return "\"" + key + "\": {\"reward_multiplier\": " + rewardMultiplier
+                + ", \"when\": \"linear_symbols\", \"group\": \"" + group + "\", \"covered_areas\": " + coveredAreas
+                + "}";
+    }
+}
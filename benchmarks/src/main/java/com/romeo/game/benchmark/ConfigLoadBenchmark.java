@@ -0,0 +1,49 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.GameConfig;
+import com.romeo.game.LoadConfigurationFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and compiling a configuration document
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigLoadBenchmark {
+
+    @Param({"3", "5", "8"})
+    public int gridSize;
+
+    @Param({"small", "large"})
+    public String configSize;
+
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = BenchmarkConfigs.generate(gridSize, BenchmarkConfigs.standardSymbolCount(configSize));
+    }
+
+    @Benchmark
+    public GameConfig loadConfig() throws IOException {
+        return LoadConfigurationFile.loadConfig(new StringReader(json));
+    }
+}
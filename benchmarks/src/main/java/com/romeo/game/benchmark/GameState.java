@@ -0,0 +1,87 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.GameConfig;
+import com.romeo.game.GameEngine;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A generated configuration shared by all benchmark threads, parameterized over grid and config size
+ */
+@State(Scope.Benchmark)
+public class GameState {
+
+    @Param({"3", "5", "8"})
+    public int gridSize;
+
+    @Param({"small", "large"})
+    public String configSize;
+
+    public GameConfig config;
+
+    public GameEngine engine;
+
+    @Setup
+    public void setUp() {
+        config = BenchmarkConfigs.load(gridSize, BenchmarkConfigs.standardSymbolCount(configSize));
+        engine = new GameEngine(config);
+    }
+
+    /**
+     * Builds a matrix of the given scenario. Cells not covered by the scenario cycle through every symbol
+     * except the winning one, which keeps a 3x3 matrix free of wins; larger grids unavoidably repeat symbols.
+     *
+     * @param scenario The matrix scenario
+     * @return The matrix
+     */
+    public List<List<String>> matrix(Scenario scenario) {
+        List<String> fillers = new ArrayList<>();
+        for (int i = 1; i < BenchmarkConfigs.standardSymbolCount(configSize); i++) {
+            fillers.add(BenchmarkConfigs.standardSymbol(i));
+        }
+        fillers.addAll(List.of(BenchmarkConfigs.BONUS_SYMBOLS));
+        var winner = BenchmarkConfigs.standardSymbol(0);
+
+        List<List<String>> matrix = new ArrayList<>();
+        for (int row = 0; row < gridSize; row++) {
+            List<String> symbols = new ArrayList<>();
+            for (int column = 0; column < gridSize; column++) {
+                symbols.add(scenario.wins(row, column) ? winner : fillers.get((row * gridSize + column) % fillers.size()));
+            }
+            matrix.add(symbols);
+        }
+        return matrix;
+    }
+
+    /**
+     * Representative matrices for the win evaluation
+     */
+    public enum Scenario {
+
+        // No symbol reaches a winning count on a 3x3 grid
+        NO_WIN,
+
+        // Three scattered cells of one symbol, not forming any line
+        SAME_SYMBOL,
+
+        // The first row filled with one symbol
+        LINEAR,
+
+        // Every cell holds the same symbol, 9 of a kind on a 3x3 grid
+        FULL;
+
+        boolean wins(int row, int column) {
+            return switch (this) {
+                case NO_WIN -> false;
+                case SAME_SYMBOL -> (row == 0 && column == 0) || (row == 1 && column == 2) || (row == 2 && column == 1);
+                case LINEAR -> row == 0;
+                case FULL -> true;
+            };
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.MatrixGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing a full matrix of symbol names
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixGenerationBenchmark {
+
+    @Benchmark
+    public List<List<String>> generateRandomMatrix(GameState game, RoundState round) {
+        return MatrixGenerator.generateRandomMatrix(game.config, round.random);
+    }
+}
@@ -0,0 +1,52 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.ScratchGameUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the standard reward and the bonus symbol lookup for a winning linear matrix
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RewardBenchmark {
+
+    private static final int BETTING_AMOUNT = 100;
+
+    private List<List<String>> matrix;
+
+    private Map<String, List<String>> appliedWinningCombinations;
+
+    @Setup
+    public void setUp(GameState game) {
+        matrix = game.matrix(GameState.Scenario.LINEAR);
+        appliedWinningCombinations = ScratchGameUtility.findAppliedWinningCombinations(game.config, matrix);
+    }
+
+    @Benchmark
+    public int calculateStandardSymbolReward(GameState game) {
+        return ScratchGameUtility.calculateStandardSymbolReward(game.config, appliedWinningCombinations,
+                BETTING_AMOUNT);
+    }
+
+    @Benchmark
+    public List<String> findAppliedBonusSymbols(GameState game) {
+        return ScratchGameUtility.findAppliedBonusSymbols(game.config, matrix);
+    }
+}
@@ -0,0 +1,35 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.RoundResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full round, materialized as a RoundResult and on the allocation-free path
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoundBenchmark {
+
+    private static final int BETTING_AMOUNT = 100;
+
+    @Benchmark
+    public RoundResult play(GameState game, RoundState round) {
+        return game.engine.play(BETTING_AMOUNT, round.random);
+    }
+
+    @Benchmark
+    public int playInContext(GameState game, RoundState round) {
+        return game.engine.play(BETTING_AMOUNT, round.random, round.context);
+    }
+}
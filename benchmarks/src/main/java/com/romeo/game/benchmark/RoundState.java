@@ -0,0 +1,25 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.RoundContext;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * The per thread random stream and round context
+ */
+@State(Scope.Thread)
+public class RoundState {
+
+    public SplittableRandom random;
+
+    public RoundContext context;
+
+    @Setup
+    public void setUp(GameState game) {
+        random = new SplittableRandom(42);
+        context = game.engine.newContext();
+    }
+}
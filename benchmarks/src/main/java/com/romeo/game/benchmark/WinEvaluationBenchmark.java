@@ -0,0 +1,45 @@
+package com.romeo.game.benchmark;
+
+import com.romeo.game.ScratchGameUtility;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the applied winning combinations of representative matrices
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WinEvaluationBenchmark {
+
+    @Param({"NO_WIN", "SAME_SYMBOL", "LINEAR", "FULL"})
+    public GameState.Scenario scenario;
+
+    private List<List<String>> matrix;
+
+    @Setup
+    public void setUp(GameState game) {
+        matrix = game.matrix(scenario);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> findAppliedWinningCombinations(GameState game) {
+        return ScratchGameUtility.findAppliedWinningCombinations(game.config, matrix);
+    }
+}
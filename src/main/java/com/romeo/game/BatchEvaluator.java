@@ -0,0 +1,49 @@
+package com.romeo.game;
+
+/**
+ * Evaluates the win combinations of every round in a {@link MatrixBatch}.
+ * <p>
+ * The Vector API implementation is used when the {@code jdk.incubator.vector} module is present, that is when the
+ * JVM runs with {@code --add-modules jdk.incubator.vector}, for matrices evaluated as single cell bitmasks and runs
+ * of at least {@value #VECTOR_MIN_ROUNDS} rounds. Until the JIT compiler has compiled it, vector code runs far
+ * slower than the scalar loop, and a shorter run does not win that time back. {@value #VECTOR_PROPERTY} set to
+ * {@code true} uses it for runs of any length, set to {@code false} never. Otherwise rounds are evaluated one lane
+ * at a time. Both give exactly the results of {@link WinCombinationEvaluator#evaluate(long, boolean)}.
+ */
+public interface BatchEvaluator {
+
+    // The system property forcing the Vector API implementation on when set to true, or off when set to false
+    String VECTOR_PROPERTY = "scratch.vector";
+
+    // The fewest rounds of a run worth the warm-up of the Vector API implementation
+    long VECTOR_MIN_ROUNDS = 1L << 23;
+
+    /**
+     * Evaluates every lane of a batch, filling its applied combinations
+     *
+     * @param batch The batch, with its matrices generated
+     */
+    void evaluate(MatrixBatch batch);
+
+    /**
+     * Returns the name of the implementation
+     */
+    String getName();
+
+    /**
+     * Creates the fastest evaluator available in this JVM for a run
+     *
+     * @param config The configuration
+     * @param rounds The number of rounds the whole run plays in batches, over all threads
+     * @return The evaluator
+     */
+    static BatchEvaluator create(GameConfig config, long rounds) {
+        var vectorModule = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        var vector = System.getProperty(VECTOR_PROPERTY);
+        if (vectorModule && config.getWinCombinationEvaluator().isPacked() && !"false".equals(vector)
+                && (rounds >= VECTOR_MIN_ROUNDS || "true".equals(vector))) {
+            return new VectorBatchEvaluator(config);
+        }
+        return new ScalarBatchEvaluator(config);
+    }
+}
@@ -0,0 +1,284 @@
+package com.romeo.game;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Streams bet requests through the game and writes one NDJSON result per round.
+ * <p>
+ * Every input line holds a betting amount optionally followed by a seed and a request id, separated by
+ * whitespace or commas, or the same fields as a JSON object ({@code betting_amount}, {@code seed},
+ * {@code request_id}). A round with a seed is reproducible: it is played on a generator of the runner's algorithm,
+ * {@value RoundRandomSource#DEFAULT_ALGORITHM} unless another is given, like the rounds of a {@link PlayServer},
+ * so the seed of a round journaled with the same algorithm replays it here too. Lines are parsed on a reader
+ * thread, played on a pool of workers and written in input order. At most {@code capacity} rounds are in flight at
+ * any time, so memory use does not depend on the length of the input.
+ * <p>
+ * Workers serialize their rounds with the engine's {@link ResultWriter} into a buffer of their own. In the binary
+ * output every round is an int length followed by the binary form of the round, and an invalid line is the
+ * negated length of its UTF-8 error message followed by the message.
+ */
+public class BatchRunner {
+
+    // The default number of rounds buffered between the reader and the writer
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    // Marks the end of the input in the result queue
+    private static final CompletableFuture<byte[]> END = CompletableFuture.completedFuture(null);
+
+    // The size of the output buffer collecting the results written to the channel
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] REQUEST_ID = "\"request_id\": \"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUOTE_SEPARATOR = "\", ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BETTING_AMOUNT = "\"betting_amount\": ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEED = "\"seed\": ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SEPARATOR = ", ".getBytes(StandardCharsets.US_ASCII);
+
+    // The request fields around the request id and the result object, with the longest amount and seed
+    private static final int REQUEST_FIELDS_SIZE = 128;
+
+    private final GameEngine engine;
+
+    private final int workers;
+
+    private final int capacity;
+
+    private final boolean binary;
+
+    // Only creates generators of request seeds, so its master seed is never used
+    private final RoundRandomSource randomSource;
+
+    private final ThreadLocal<RoundContext> contexts;
+
+    // The serialization buffer of every worker, replaced by a larger one for a long request id
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    public BatchRunner(GameEngine engine, int workers, int capacity) {
+        this(engine, workers, capacity, false);
+    }
+
+    public BatchRunner(GameEngine engine, int workers, int capacity, boolean binary) {
+        this(engine, workers, capacity, binary, RoundRandomSource.DEFAULT_ALGORITHM);
+    }
+
+    /**
+     * Creates a runner playing seeded rounds on a given generator algorithm
+     *
+     * @param engine    The engine playing the rounds
+     * @param workers   The number of worker threads
+     * @param capacity  The largest number of rounds in flight
+     * @param binary    Whether the results are written in their binary form instead of NDJSON
+     * @param algorithm The random generator algorithm of seeded rounds, the one the replayed rounds were played on
+     */
+    public BatchRunner(GameEngine engine, int workers, int capacity, boolean binary, String algorithm) {
+        this.engine = engine;
+        this.workers = workers;
+        this.capacity = capacity;
+        this.binary = binary;
+        this.randomSource = new RoundRandomSource(algorithm, 0);
+        this.contexts = ThreadLocal.withInitial(engine::newContext);
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(resultSize(0)));
+    }
+
+    /**
+     * Plays every request of the input and writes the results in input order
+     *
+     * @param input  The bet requests, one per line
+     * @param output The NDJSON or binary results
+     * @return The number of lines processed
+     * @throws IOException If reading or writing fails
+     */
+    public long run(BufferedReader input, WritableByteChannel output) throws IOException {
+        BlockingQueue<CompletableFuture<byte[]>> results = new ArrayBlockingQueue<>(capacity);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        // A daemon, so a reader blocked on the input never keeps the JVM alive once the writer gave up
+        var reader = Thread.ofPlatform().name("batch-reader").daemon()
+                .start(() -> readRequests(input, pool, results));
+        var buffer = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        long lines = 0;
+        try {
+            while (true) {
+                var result = results.take();
+                if (result == END) {
+                    break;
+                }
+                var bytes = result.get();
+                if (buffer.remaining() < bytes.length) {
+                    ResultWriter.drain(buffer, output);
+                }
+                if (bytes.length > buffer.capacity()) {
+                    var large = ByteBuffer.wrap(bytes);
+                    while (large.hasRemaining()) {
+                        output.write(large);
+                    }
+                } else {
+                    buffer.put(bytes);
+                }
+                lines++;
+            }
+            ResultWriter.drain(buffer, output);
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing batch results", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException readFailure) {
+                throw new IOException("Unable to read batch requests", readFailure.getCause());
+            }
+            throw new IOException("Unable to play batch round", e.getCause());
+        } finally {
+            // Stops a reader blocked on the full queue, e.g. after the output was closed, before the workers
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+        return lines;
+    }
+
+    /**
+     * Parses the input on the reader thread and queues one future per line, blocking when the writer falls behind
+     */
+    private void readRequests(BufferedReader input, ExecutorService pool,
+                              BlockingQueue<CompletableFuture<byte[]>> results) {
+        try {
+            try {
+                long lineNumber = 0;
+                String line;
+                while ((line = input.readLine()) != null) {
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    var currentLine = line;
+                    var currentLineNumber = lineNumber;
+                    results.put(CompletableFuture.supplyAsync(() -> process(currentLine, currentLineNumber), pool));
+                }
+            } catch (IOException e) {
+                results.put(CompletableFuture.failedFuture(new UncheckedIOException(e)));
+            }
+            results.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Plays the round of one input line and serializes its result line
+     */
+    private byte[] process(String line, long lineNumber) {
+        BatchRequest request;
+        try {
+            request = BatchRequest.parse(line);
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage(), lineNumber);
+        }
+        var context = contexts.get();
+        var random = request.seed() == null ? ThreadLocalRandom.current()
+                : randomSource.create(request.seed());
+        engine.play(request.bettingAmount(), random, context);
+
+        var writer = engine.getResultWriter();
+        var requestId = request.requestId() == null ? null
+                : JSONObject.escape(request.requestId()).getBytes(StandardCharsets.UTF_8);
+        var buffer = buffers.get();
+        if (requestId != null && buffer.capacity() < resultSize(requestId.length)) {
+            buffer = ByteBuffer.allocate(resultSize(requestId.length));
+            buffers.set(buffer);
+        }
+        buffer.clear();
+        if (binary) {
+            buffer.putInt(0);
+            writer.writeBinary(context, buffer);
+            buffer.putInt(0, buffer.position() - Integer.BYTES);
+        } else {
+            buffer.put((byte) '{');
+            if (requestId != null) {
+                buffer.put(REQUEST_ID).put(requestId).put(QUOTE_SEPARATOR);
+            }
+            buffer.put(BETTING_AMOUNT);
+            ResultWriter.writeDecimal(buffer, request.bettingAmount());
+            buffer.put(SEPARATOR);
+            if (request.seed() != null) {
+                buffer.put(SEED);
+                ResultWriter.writeDecimal(buffer, request.seed());
+                buffer.put(SEPARATOR);
+            }
+            writer.writeJsonFields(context, buffer);
+            buffer.put((byte) '}').put((byte) '\n');
+        }
+        var result = new byte[buffer.position()];
+        buffer.flip().get(result);
+        return result;
+    }
+
+    /**
+     * Serializes the error of an invalid input line
+     */
+    private byte[] error(String message, long lineNumber) {
+        if (binary) {
+            var bytes = message.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(-bytes.length).put(bytes).array();
+        }
+        return ("{\"line\": " + lineNumber + ", \"error\": \"" + JSONObject.escape(message) + "\"}\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the largest result line size for a request id of the given number of bytes
+     */
+    private int resultSize(int requestIdBytes) {
+        var writer = engine.getResultWriter();
+        return Integer.BYTES + Math.max(writer.getMaxBinarySize(),
+                writer.getMaxJsonSize() + requestIdBytes + REQUEST_FIELDS_SIZE);
+    }
+
+    /**
+     * A single line of batch input
+     *
+     * @param bettingAmount The betting amount
+     * @param seed          The seed of the round, null for a random round
+     * @param requestId     The request id echoed in the result, may be null
+     */
+    record BatchRequest(int bettingAmount, Long seed, String requestId) {
+
+        static BatchRequest parse(String line) {
+            var text = line.trim();
+            if (text.startsWith("{")) {
+                try {
+                    var request = (JSONObject) new JSONParser().parse(text);
+                    var seed = request.get("seed");
+                    var requestId = request.get("request_id");
+                    return new BatchRequest(PlayServer.toBettingAmount(request.get("betting_amount")),
+                            seed == null ? null : (Long) seed, requestId == null ? null : requestId.toString());
+                } catch (ParseException | ClassCastException e) {
+                    throw new IllegalArgumentException("Invalid request: " + text);
+                }
+            }
+            var fields = text.split("[\\s,]+");
+            if (fields.length > 3) {
+                throw new IllegalArgumentException("Invalid request: " + text);
+            }
+            try {
+                return new BatchRequest(PlayServer.toBettingAmount(Long.parseLong(fields[0])),
+                        fields.length > 1 ? Long.valueOf(fields[1]) : null, fields.length > 2 ? fields[2] : null);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid request: " + text);
+            }
+        }
+    }
+}
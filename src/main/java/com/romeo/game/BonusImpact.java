@@ -0,0 +1,52 @@
+package com.romeo.game;
+
+/**
+ * The effect a bonus symbol has on the reward, taken from the symbol's configured impact
+ */
+public enum BonusImpact {
+
+    // The symbol does not change the reward, e.g. MISS or any standard symbol
+    NONE,
+
+    // The reward is multiplied by the symbol's reward multiplier
+    MULTIPLY_REWARD,
+
+    // The symbol's extra value is added to the reward
+    EXTRA_BONUS;
+
+    /**
+     * Resolves the configured impact of a symbol
+     *
+     * @param symbol The symbol, null if it is not configured
+     * @return The bonus impact
+     */
+    public static BonusImpact of(Symbol symbol) {
+        if (symbol == null || symbol.getImpact() == null) {
+            return NONE;
+        }
+        return switch (symbol.getImpact()) {
+            case "multiply_reward" -> MULTIPLY_REWARD;
+            case "extra_bonus" -> EXTRA_BONUS;
+            default -> NONE;
+        };
+    }
+
+    /**
+     * Applies the impact to a reward. A reward of 0 is never changed, and a reward beyond the range of an int is
+     * clamped to it by both impacts.
+     *
+     * @param symbol The symbol having this impact
+     * @param reward The reward so far
+     * @return The reward after applying the impact
+     */
+    public int apply(Symbol symbol, int reward) {
+        if (reward == 0) {
+            return reward;
+        }
+        return switch (this) {
+            case MULTIPLY_REWARD -> (int) (reward * symbol.rewardMultiplier);
+            case EXTRA_BONUS -> ScratchGameUtility.saturate((long) reward + symbol.getExtra());
+            case NONE -> reward;
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package com.romeo.game;
+
+import org.json.simple.parser.ContentHandler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming handler building the configuration model straight from the parser events, without an intermediate
+ * JSON tree. Keys the game does not know are skipped, values of the wrong type are reported with their path.
+ */
+class ConfigContentHandler implements ContentHandler {
+
+    // Path element pushed for every array level
+    private static final String ARRAY = "[]";
+
+    // Matches any single path element
+    private static final String ANY = "*";
+
+    private final List<String> path = new ArrayList<>();
+
+    // The index of the current element of every open array, innermost last
+    private final List<Integer> arrayIndexes = new ArrayList<>();
+
+    private Integer columns;
+
+    private Integer rows;
+
+    private final Map<String, Symbol> symbols = new LinkedHashMap<>();
+
+    private final List<Probability> standardSymbolProbabilities = new ArrayList<>();
+
+    private final Map<String, Integer> bonusSymbolProbabilities = new LinkedHashMap<>();
+
+    private final Map<String, WinCombination> winCombinations = new LinkedHashMap<>();
+
+    private boolean symbolsFound;
+
+    private boolean standardSymbolsFound;
+
+    private boolean winCombinationsFound;
+
+    // The standard symbol probability entry being parsed
+    private Integer probabilityColumn;
+
+    private Integer probabilityRow;
+
+    private Map<String, Integer> probabilitySymbols;
+
+    // The covered area being parsed
+    private List<String> coveredArea;
+
+    /**
+     * Builds the configuration once the whole document has been parsed
+     *
+     * @param contentHash The content hash of the document
+     * @return The configuration snapshot
+     */
+    GameConfig toGameConfig(String contentHash) {
+        if (!symbolsFound) {
+            throw new ConfigurationException("Missing \"symbols\"");
+        }
+        if (!standardSymbolsFound) {
+            throw new ConfigurationException("Missing \"probabilities.standard_symbols\"");
+        }
+        if (!winCombinationsFound) {
+            throw new ConfigurationException("Missing \"win_combinations\"");
+        }
+        try {
+            return new GameConfig(rows == null ? 3 : rows, columns == null ? 3 : columns, symbols,
+                    standardSymbolProbabilities, bonusSymbolProbabilities, winCombinations, contentHash);
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void startJSON() {
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        if (matches("symbols")) {
+            symbolsFound = true;
+        } else if (matches("win_combinations")) {
+            winCombinationsFound = true;
+        } else if (matches("symbols", ANY)) {
+            symbols.put(last(), new Symbol());
+        } else if (matches("probabilities", "standard_symbols", ARRAY)) {
+            probabilityColumn = null;
+            probabilityRow = null;
+            probabilitySymbols = new LinkedHashMap<>();
+        } else if (matches("win_combinations", ANY)) {
+            winCombinations.put(last(), new WinCombination());
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        if (matches("probabilities", "standard_symbols", ARRAY)) {
+            if (probabilityColumn == null || probabilityRow == null) {
+                throw new ConfigurationException(describePath() + ": every entry needs a column and a row");
+            }
+            standardSymbolProbabilities.add(new Probability(probabilityColumn, probabilityRow, probabilitySymbols));
+        }
+        nextElement();
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        path.add(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        path.remove(path.size() - 1);
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        path.add(ARRAY);
+        arrayIndexes.add(0);
+        if (matches("probabilities", "standard_symbols", ARRAY)) {
+            standardSymbolsFound = true;
+        } else if (matches("win_combinations", ANY, "covered_areas", ARRAY, ARRAY)) {
+            coveredArea = new ArrayList<>();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        if (matches("win_combinations", ANY, "covered_areas", ARRAY, ARRAY)) {
+            winCombinations.get(path.get(1)).coveredAreas.add(coveredArea);
+        }
+        path.remove(path.size() - 1);
+        arrayIndexes.remove(arrayIndexes.size() - 1);
+        nextElement();
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (matches("columns")) {
+            columns = integer(value);
+        } else if (matches("rows")) {
+            rows = integer(value);
+        } else if (matches("symbols", ANY, ANY)) {
+            symbolValue(symbols.get(path.get(1)), last(), value);
+        } else if (matches("probabilities", "standard_symbols", ARRAY, "column")) {
+            probabilityColumn = integer(value);
+        } else if (matches("probabilities", "standard_symbols", ARRAY, "row")) {
+            probabilityRow = integer(value);
+        } else if (matches("probabilities", "standard_symbols", ARRAY, "symbols", ANY)) {
+            probabilitySymbols.put(last(), integer(value));
+        } else if (matches("probabilities", "bonus_symbols", "symbols", ANY)) {
+            bonusSymbolProbabilities.put(last(), integer(value));
+        } else if (matches("win_combinations", ANY, ANY)) {
+            winCombinationValue(winCombinations.get(path.get(1)), last(), value);
+        } else if (matches("win_combinations", ANY, "covered_areas", ARRAY, ARRAY)) {
+            coveredArea.add(string(value));
+        }
+        nextElement();
+        return true;
+    }
+
+    private void symbolValue(Symbol symbol, String key, Object value) {
+        switch (key) {
+            case "reward_multiplier" -> symbol.rewardMultiplier = number(value);
+            case "type" -> symbol.setType(string(value));
+            case "extra" -> symbol.setExtra(integer(value));
+            case "impact" -> symbol.setImpact(string(value));
+            default -> {
+                // Unknown symbol attributes are ignored
+            }
+        }
+    }
+
+    private void winCombinationValue(WinCombination winCombination, String key, Object value) {
+        switch (key) {
+            case "reward_multiplier" -> winCombination.rewardMultiplier = number(value);
+            case "count" -> winCombination.count = value == null ? 0 : integer(value);
+            case "group" -> winCombination.group = string(value);
+            case "when" -> winCombination.when = string(value);
+            default -> {
+                // Unknown combination attributes are ignored
+            }
+        }
+    }
+
+    private boolean matches(String... pattern) {
+        if (pattern.length != path.size()) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (!pattern[i].equals(ANY) && !pattern[i].equals(path.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves to the next element once a value directly inside an array is complete
+     */
+    private void nextElement() {
+        if (!path.isEmpty() && last().equals(ARRAY)) {
+            arrayIndexes.set(arrayIndexes.size() - 1, arrayIndexes.get(arrayIndexes.size() - 1) + 1);
+        }
+    }
+
+    /**
+     * Describes the current position as a JSON path such as {@code probabilities.standard_symbols[4].column}
+     */
+    private String describePath() {
+        var description = new StringBuilder();
+        var array = 0;
+        for (String element : path) {
+            if (element.equals(ARRAY)) {
+                description.append('[').append(arrayIndexes.get(array++)).append(']');
+            } else {
+                description.append(description.isEmpty() ? "" : ".").append(element);
+            }
+        }
+        return description.toString();
+    }
+
+    private String last() {
+        return path.get(path.size() - 1);
+    }
+
+    private double number(Object value) {
+        if (!(value instanceof Number number)) {
+            throw typeError("a number", value);
+        }
+        return number.doubleValue();
+    }
+
+    private int integer(Object value) {
+        if (!(value instanceof Number number) || number.doubleValue() != Math.rint(number.doubleValue())
+                || number.doubleValue() > Integer.MAX_VALUE || number.doubleValue() < Integer.MIN_VALUE) {
+            throw typeError("an integer", value);
+        }
+        return number.intValue();
+    }
+
+    private String string(Object value) {
+        if (value != null && !(value instanceof String)) {
+            throw typeError("a string", value);
+        }
+        return (String) value;
+    }
+
+    private ConfigurationException typeError(String expected, Object value) {
+        return new ConfigurationException(describePath() + ": expected " + expected
+                + " but found " + (value instanceof String ? "\"" + value + "\"" : value));
+    }
+}
@@ -0,0 +1,222 @@
+package com.romeo.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary snapshot of a loaded configuration, stored under the SHA-256 of the JSON document it was loaded from.
+ * <p>
+ * A snapshot holds the configuration model in document order as fixed width numbers and length prefixed UTF-8
+ * strings, so reading one back is a single pass over a memory-mapped file without any JSON parsing. Snapshots are
+ * written to a temporary file and moved into place, so concurrent processes sharing a cache directory never see
+ * a partial snapshot. A snapshot that cannot be read is ignored and the JSON document is parsed instead.
+ */
+class ConfigSnapshot {
+
+    // "SCFG", the first bytes of every snapshot
+    private static final int MAGIC = 0x53434647;
+
+    // Bumped whenever the layout below changes
+    private static final int VERSION = 1;
+
+    private static final int HASH_LENGTH = 32;
+
+    private final Path directory;
+
+    ConfigSnapshot(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads the snapshot of a JSON document
+     *
+     * @param contentHash The SHA-256 of the document
+     * @return The configuration, or null if there is no usable snapshot
+     */
+    GameConfig read(String contentHash) {
+        var file = file(contentHash);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), contentHash);
+        } catch (IOException | RuntimeException e) {
+            // A truncated or corrupt snapshot is rebuilt from the JSON document
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a configuration loaded from a JSON document
+     *
+     * @param config The configuration, which must carry its content hash
+     * @throws IOException If the snapshot cannot be written
+     */
+    void write(GameConfig config) throws IOException {
+        Files.createDirectories(directory);
+        var temporary = Files.createTempFile(directory, config.getContentHash(), ".tmp");
+        try {
+            Files.write(temporary, encode(config));
+            Files.move(temporary, file(config.getContentHash()), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path file(String contentHash) {
+        return directory.resolve(contentHash + ".snapshot");
+    }
+
+    private static byte[] encode(GameConfig config) throws IOException {
+        var bytes = new ByteArrayOutputStream(4096);
+        var out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.write(HexFormat.of().parseHex(config.getContentHash()));
+        out.writeInt(config.getRows());
+        out.writeInt(config.getColumns());
+
+        out.writeInt(config.getSymbols().size());
+        for (Map.Entry<String, Symbol> entry : config.getSymbols().entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeDouble(entry.getValue().rewardMultiplier);
+            writeString(out, entry.getValue().getType());
+            out.writeInt(entry.getValue().getExtra());
+            writeString(out, entry.getValue().getImpact());
+        }
+
+        out.writeInt(config.getStandardSymbolProbabilities().size());
+        for (Probability probability : config.getStandardSymbolProbabilities()) {
+            out.writeInt(probability.getColumn());
+            out.writeInt(probability.getRow());
+            writeWeights(out, probability.symbolProbabilities);
+        }
+        writeWeights(out, config.getBonusSymbolProbabilities());
+
+        out.writeInt(config.getWinCombinations().size());
+        for (Map.Entry<String, WinCombination> entry : config.getWinCombinations().entrySet()) {
+            var winCombination = entry.getValue();
+            writeString(out, entry.getKey());
+            out.writeDouble(winCombination.rewardMultiplier);
+            out.writeInt(winCombination.count);
+            writeString(out, winCombination.group);
+            writeString(out, winCombination.when);
+            out.writeInt(winCombination.coveredAreas.size());
+            for (List<String> area : winCombination.coveredAreas) {
+                out.writeInt(area.size());
+                for (String cell : area) {
+                    writeString(out, cell);
+                }
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static GameConfig decode(ByteBuffer in, String contentHash) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            return null;
+        }
+        var hash = new byte[HASH_LENGTH];
+        in.get(hash);
+        if (!HexFormat.of().formatHex(hash).equals(contentHash)) {
+            return null;
+        }
+        var rows = in.getInt();
+        var columns = in.getInt();
+
+        Map<String, Symbol> symbols = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            var name = readString(in);
+            var symbol = new Symbol();
+            symbol.rewardMultiplier = in.getDouble();
+            symbol.setType(readString(in));
+            symbol.setExtra(in.getInt());
+            symbol.setImpact(readString(in));
+            symbols.put(name, symbol);
+        }
+
+        List<Probability> standardSymbolProbabilities = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            var column = in.getInt();
+            var row = in.getInt();
+            standardSymbolProbabilities.add(new Probability(column, row, readWeights(in)));
+        }
+        var bonusSymbolProbabilities = readWeights(in);
+
+        Map<String, WinCombination> winCombinations = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            var name = readString(in);
+            var winCombination = new WinCombination();
+            winCombination.rewardMultiplier = in.getDouble();
+            winCombination.count = in.getInt();
+            winCombination.group = readString(in);
+            winCombination.when = readString(in);
+            for (int j = in.getInt(); j > 0; j--) {
+                List<String> area = new ArrayList<>();
+                for (int k = in.getInt(); k > 0; k--) {
+                    area.add(readString(in));
+                }
+                winCombination.coveredAreas.add(area);
+            }
+            winCombinations.put(name, winCombination);
+        }
+        return new GameConfig(rows, columns, symbols, standardSymbolProbabilities, bonusSymbolProbabilities,
+                winCombinations, contentHash);
+    }
+
+    private static void writeWeights(DataOutputStream out, Map<String, Integer> weights) throws IOException {
+        out.writeInt(weights.size());
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            writeString(out, entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static Map<String, Integer> readWeights(ByteBuffer in) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            weights.put(readString(in), in.getInt());
+        }
+        return weights;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        var length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        // A corrupt length must not allocate more than the snapshot could hold
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        var bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
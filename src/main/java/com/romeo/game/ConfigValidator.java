@@ -0,0 +1,47 @@
+package com.romeo.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks a loaded configuration for mistakes the compiled sampler and evaluator would silently accept.
+ * Covered areas outside the matrix are already rejected when the configuration is compiled.
+ */
+final class ConfigValidator {
+
+    private ConfigValidator() {
+    }
+
+    /**
+     * Validates a configuration
+     *
+     * @param config The configuration
+     * @throws ConfigurationException Listing every problem found
+     */
+    static void validate(GameConfig config) {
+        List<String> problems = new ArrayList<>();
+        var symbols = config.getSymbols();
+        for (Probability probability : config.getStandardSymbolProbabilities()) {
+            var path = "probabilities.standard_symbols[column " + probability.getColumn() + ", row "
+                    + probability.getRow() + "]";
+            validateWeights(path, probability.symbolProbabilities, symbols, problems);
+        }
+        validateWeights("probabilities.bonus_symbols", config.getBonusSymbolProbabilities(), symbols, problems);
+        if (!problems.isEmpty()) {
+            throw new ConfigurationException(String.join("; ", problems));
+        }
+    }
+
+    private static void validateWeights(String path, Map<String, Integer> weights, Map<String, Symbol> symbols,
+                                        List<String> problems) {
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            if (!symbols.containsKey(entry.getKey())) {
+                problems.add(path + ": symbol " + entry.getKey() + " is not defined in symbols");
+            }
+            if (entry.getValue() <= 0) {
+                problems.add(path + ": probability of " + entry.getKey() + " must be positive");
+            }
+        }
+    }
+}
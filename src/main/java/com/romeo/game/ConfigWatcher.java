@@ -0,0 +1,126 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a game engine in step with its configuration file.
+ * <p>
+ * The directory of the file is watched for changes. After every change the file is loaded and validated into a
+ * fresh {@link GameConfig}, and only a valid configuration replaces the current engine. The swap is a single
+ * reference update: a round that already obtained the engine finishes on the old configuration, every later
+ * round uses the new one. A file that cannot be loaded is reported and the current engine is kept, and so is the
+ * engine of a file saved again with the same content, together with its warmed up payout cache.
+ */
+public final class ConfigWatcher implements Supplier<GameEngine>, AutoCloseable {
+
+    // Editors often write a file in several steps, so changes are collected for this long before reloading
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path configFile;
+
+    // The metrics every engine records to, may be null
+    private final GameMetrics metrics;
+
+    private final AtomicReference<GameEngine> engine;
+
+    private final WatchService watchService;
+
+    private final Thread thread;
+
+    public ConfigWatcher(Path configFile) throws IOException {
+        this(configFile, null);
+    }
+
+    public ConfigWatcher(Path configFile, GameMetrics metrics) throws IOException {
+        this.configFile = configFile.toAbsolutePath().normalize();
+        this.metrics = metrics;
+        this.engine = new AtomicReference<>(
+                new GameEngine(LoadConfigurationFile.loadConfig(this.configFile.toString()), metrics));
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.configFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = Thread.ofPlatform().name("config-watcher").daemon().start(this::watch);
+    }
+
+    /**
+     * Returns the engine of the current configuration. Callers should obtain it once per round or request.
+     */
+    @Override
+    public GameEngine get() {
+        return engine.get();
+    }
+
+    /**
+     * Loads the configuration file again and swaps it in if it is valid
+     *
+     * @return True if the new configuration is in use
+     */
+    public boolean reload() {
+        try {
+            var config = LoadConfigurationFile.loadConfig(configFile.toString());
+            var contentHash = config.getContentHash();
+            if (contentHash != null && contentHash.equals(engine.get().getConfig().getContentHash())) {
+                return true;
+            }
+            engine.set(new GameEngine(config, metrics));
+            System.err.println("Reloaded configuration " + configFile + " (" + contentHash + ")");
+            return true;
+        } catch (ConfigurationException e) {
+            System.err.println("Keeping the current configuration: " + e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            // Escaping the watch thread would end it, and with it every later reload
+            System.err.println("Keeping the current configuration, reloading failed: " + e);
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                var key = watchService.take();
+                var changed = affectsConfigFile(key.pollEvents());
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // Let the write settle, draining the events it still produces
+                TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+                var next = watchService.poll();
+                while (next != null) {
+                    next.pollEvents();
+                    next.reset();
+                    next = watchService.poll();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher was closed
+        }
+    }
+
+    private boolean affectsConfigFile(Iterable<WatchEvent<?>> events) {
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || configFile.getFileName().equals(event.context())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,15 @@
+package com.romeo.game;
+
+/**
+ * Thrown when a configuration file cannot be read or does not describe a valid game
+ */
+public class ConfigurationException extends RuntimeException {
+
+    public ConfigurationException(String message) {
+        super(message);
+    }
+
+    public ConfigurationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,563 @@
+package com.romeo.game;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Calculates the exact payout distribution of a configuration without sampling.
+ * <p>
+ * Cells are drawn independently, so the probability of a matrix factors into one term per symbol: the
+ * product of that symbol's weights over the cells it occupies. The standard reward is a sum of one truncated
+ * term per symbol that only depends on the cells the symbol occupies. The calculator therefore runs a dynamic
+ * program over the symbols without a bonus effect, keyed by the set of still unassigned cells and the standard
+ * reward collected so far, instead of enumerating every matrix. Only the symbols with a bonus effect, whose
+ * order in the matrix matters, are enumerated cell by cell over the remaining cells, in parallel over the
+ * remaining cell sets.
+ * <p>
+ * That enumeration visits up to {@code (1 + b)^cells} assignments for {@code b} bonus symbols with an effect, see
+ * {@link #countBonusAssignments()}: about 2 million for the 3x3 default configuration instead of 11^9 full
+ * matrices, which takes about 3 seconds for the distribution and 0.2 seconds for the moments on one core. Every
+ * cell added multiplies that work by {@code 1 + b}, so the calculator is limited to {@value #MAX_CELLS} cells and
+ * larger matrices are simulated.
+ */
+public class ExactRtpCalculator {
+
+    // The largest matrix whose bonus symbols are enumerated in seconds, see the class comment
+    public static final int MAX_CELLS = 10;
+
+    private final GameConfig config;
+
+    private final int cells;
+
+    private final SymbolTable symbolTable;
+
+    // Indexed by symbol and cell, the integer weight of the symbol in the cell
+    private final long[][] weights;
+
+    private final BigInteger totalWeight;
+
+    // Indexed by cell, the total weight of all symbols in the cell
+    private final long[] cellTotals;
+
+    public ExactRtpCalculator(GameConfig config) {
+        this.config = config;
+        this.cells = config.getRows() * config.getColumns();
+        if (cells > MAX_CELLS) {
+            throw new IllegalArgumentException("Exact calculation supports up to " + MAX_CELLS
+                    + " cells, use the simulation for a " + config.getRows() + "x" + config.getColumns() + " matrix");
+        }
+        var sampler = config.getSymbolSampler();
+        this.symbolTable = config.getSymbolTable();
+        this.weights = new long[symbolTable.size()][cells];
+        this.cellTotals = new long[cells];
+        var total = BigInteger.ONE;
+        for (int cell = 0; cell < cells; cell++) {
+            var cellWeights = sampler.getCellWeights(cell / config.getColumns(), cell % config.getColumns());
+            long cellTotal = 0;
+            for (int symbol = 0; symbol < weights.length; symbol++) {
+                weights[symbol][cell] = cellWeights[symbol];
+                cellTotal += cellWeights[symbol];
+            }
+            cellTotals[cell] = cellTotal;
+            total = total.multiply(BigInteger.valueOf(cellTotal));
+        }
+        this.totalWeight = total;
+    }
+
+    /**
+     * Returns the number of assignments of the bonus symbols to the cells left by the dynamic program that the
+     * calculation enumerates, counting every set of remaining cells. The cost of both calculations grows with it.
+     *
+     * @return The number of assignments, at most {@link Long#MAX_VALUE}
+     */
+    public long countBonusAssignments() {
+        long assignments = 1;
+        for (int cell = 0; cell < cells; cell++) {
+            long choices = 1;
+            for (int symbol = 0; symbol < weights.length; symbol++) {
+                if (weights[symbol][cell] > 0 && symbolTable.getBonusImpact(symbol) != BonusImpact.NONE) {
+                    choices++;
+                }
+            }
+            assignments = assignments > Long.MAX_VALUE / choices ? Long.MAX_VALUE : assignments * choices;
+        }
+        return assignments;
+    }
+
+    /**
+     * Calculates the payout distribution of a round
+     *
+     * @param bettingAmount The betting amount
+     * @return The exact payout distribution
+     */
+    public PayoutDistribution calculate(int bettingAmount) {
+        var full = (1 << cells) - 1;
+        List<Integer> plainSymbols = new ArrayList<>();
+        List<Integer> bonusSymbols = new ArrayList<>();
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            (symbolTable.getBonusImpact(symbol) != BonusImpact.NONE ? bonusSymbols : plainSymbols).add(symbol);
+        }
+        var symbolRewards = new int[weights.length][];
+        var maskWeights = new BigInteger[weights.length][];
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            symbolRewards[symbol] = symbolRewards(symbol, bettingAmount);
+            maskWeights[symbol] = maskWeights(symbol);
+        }
+
+        // Indexed by the set of unassigned cells, the weight of every standard reward collected so far
+        var states = emptyStates(full);
+        states.set(full, Map.of(0, BigInteger.ONE));
+        for (int symbol : plainSymbols) {
+            var next = emptyStates(full);
+            var support = support(symbol);
+            for (int remaining = 0; remaining <= full; remaining++) {
+                if (states.get(remaining) == null) {
+                    continue;
+                }
+                var candidates = remaining & support;
+                // Walks every subset of the candidate cells, the empty set included
+                for (int occupied = candidates; ; occupied = (occupied - 1) & candidates) {
+                    var reward = symbolRewards[symbol][occupied];
+                    var weight = maskWeights[symbol][occupied];
+                    var target = next.get(remaining & ~occupied);
+                    if (target == null) {
+                        target = new HashMap<>();
+                        next.set(remaining & ~occupied, target);
+                    }
+                    for (Map.Entry<Integer, BigInteger> entry : states.get(remaining).entrySet()) {
+                        target.merge(ScratchGameUtility.saturate((long) entry.getKey() + reward),
+                                entry.getValue().multiply(weight), BigInteger::add);
+                    }
+                    if (occupied == 0) {
+                        break;
+                    }
+                }
+            }
+            states = next;
+        }
+
+        var finalStates = states;
+        var bonusSymbolIds = bonusSymbols.stream().mapToInt(Integer::intValue).toArray();
+        var distribution = IntStream.rangeClosed(0, full).parallel()
+                .filter(remaining -> finalStates.get(remaining) != null)
+                .mapToObj(remaining -> new BonusEnumeration(remaining,
+                        List.copyOf(finalStates.get(remaining).entrySet()), bonusSymbolIds, symbolRewards).run())
+                .reduce(new HashMap<>(), ExactRtpCalculator::mergeDistributions);
+        return new PayoutDistribution(bettingAmount, distribution, totalWeight);
+    }
+
+    /**
+     * Calculates the return to player, hit frequency and payout variance of a round without the distribution of
+     * the individual payouts. The dynamic program is the one of {@link #calculate(int)}, carried out on
+     * probabilities in double precision instead of exact weights, which makes it cheap enough to evaluate the
+     * many candidate configurations of a {@link ConfigOptimizer}.
+     *
+     * @param bettingAmount The betting amount
+     * @return The payout moments
+     */
+    public PayoutMoments calculateMoments(int bettingAmount) {
+        var full = (1 << cells) - 1;
+        List<Integer> plainSymbols = new ArrayList<>();
+        List<Integer> bonusSymbols = new ArrayList<>();
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            (symbolTable.getBonusImpact(symbol) != BonusImpact.NONE ? bonusSymbols : plainSymbols).add(symbol);
+        }
+        var symbolRewards = new int[weights.length][];
+        var maskProbabilities = new double[weights.length][];
+        for (int symbol = 0; symbol < weights.length; symbol++) {
+            symbolRewards[symbol] = symbolRewards(symbol, bettingAmount);
+            maskProbabilities[symbol] = maskProbabilities(symbol);
+        }
+
+        var states = new RewardProbabilities[full + 1];
+        states[full] = new RewardProbabilities();
+        states[full].add(0, 1.0);
+        for (int symbol : plainSymbols) {
+            var next = new RewardProbabilities[full + 1];
+            var support = support(symbol);
+            for (int remaining = 0; remaining <= full; remaining++) {
+                if (states[remaining] == null) {
+                    continue;
+                }
+                var candidates = remaining & support;
+                for (int occupied = candidates; ; occupied = (occupied - 1) & candidates) {
+                    var target = next[remaining & ~occupied];
+                    if (target == null) {
+                        target = new RewardProbabilities();
+                        next[remaining & ~occupied] = target;
+                    }
+                    states[remaining].addTo(target, symbolRewards[symbol][occupied],
+                            maskProbabilities[symbol][occupied]);
+                    if (occupied == 0) {
+                        break;
+                    }
+                }
+            }
+            states = next;
+        }
+
+        var finalStates = states;
+        var bonusSymbolIds = bonusSymbols.stream().mapToInt(Integer::intValue).toArray();
+        var sums = IntStream.rangeClosed(0, full).parallel()
+                .filter(remaining -> finalStates[remaining] != null)
+                .mapToObj(remaining -> new BonusMoments(remaining, finalStates[remaining], bonusSymbolIds,
+                        symbolRewards).run())
+                .reduce(new double[3], ExactRtpCalculator::addSums);
+        var mean = sums[0];
+        return new PayoutMoments(bettingAmount, mean / bettingAmount, sums[2],
+                Math.max(0.0, sums[1] - mean * mean));
+    }
+
+    /**
+     * Creates the states of the dynamic program of {@link #calculate(int)} for every set of unassigned cells, none
+     * reached yet
+     */
+    private static List<Map<Integer, BigInteger>> emptyStates(int full) {
+        return new ArrayList<>(Collections.nCopies(full + 1, null));
+    }
+
+    private static double[] addSums(double[] left, double[] right) {
+        return new double[]{left[0] + right[0], left[1] + right[1], left[2] + right[2]};
+    }
+
+    private static Map<Long, BigInteger> mergeDistributions(Map<Long, BigInteger> left, Map<Long, BigInteger> right) {
+        var merged = new HashMap<>(left);
+        right.forEach((payout, weight) -> merged.merge(payout, weight, BigInteger::add));
+        return merged;
+    }
+
+    /**
+     * Returns the cells in which a symbol can be drawn
+     */
+    private int support(int symbol) {
+        int support = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (weights[symbol][cell] > 0) {
+                support |= 1 << cell;
+            }
+        }
+        return support;
+    }
+
+    /**
+     * Computes the truncated standard reward of a symbol for every set of cells it can occupy
+     */
+    private int[] symbolRewards(int symbol, int bettingAmount) {
+        var evaluator = config.getWinCombinationEvaluator();
+        var miss = symbolTable.isMiss(symbol);
+        var rewards = new int[1 << cells];
+        if (symbolTable.getSymbol(symbol) == null) {
+            return rewards;
+        }
+        for (int occupied = 0; occupied < rewards.length; occupied++) {
+            if (Integer.bitCount(occupied) >= WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                rewards[occupied] = (int) ScratchGameUtility.calculateSymbolReward(config, symbol,
+                        evaluator.evaluate(occupied, miss), bettingAmount);
+            }
+        }
+        return rewards;
+    }
+
+    /**
+     * Computes the product of a symbol's weights for every set of cells it can occupy
+     */
+    private BigInteger[] maskWeights(int symbol) {
+        var products = new BigInteger[1 << cells];
+        products[0] = BigInteger.ONE;
+        for (int occupied = 1; occupied < products.length; occupied++) {
+            var cell = Integer.numberOfTrailingZeros(occupied);
+            products[occupied] = products[occupied & (occupied - 1)].multiply(BigInteger.valueOf(weights[symbol][cell]));
+        }
+        return products;
+    }
+
+    /**
+     * Computes the probability of a symbol occupying exactly a set of cells, as far as those cells are concerned
+     */
+    private double[] maskProbabilities(int symbol) {
+        var products = new double[1 << cells];
+        products[0] = 1.0;
+        for (int occupied = 1; occupied < products.length; occupied++) {
+            var cell = Integer.numberOfTrailingZeros(occupied);
+            products[occupied] = products[occupied & (occupied - 1)] * weights[symbol][cell] / cellTotals[cell];
+        }
+        return products;
+    }
+
+    /**
+     * The probability of every standard reward collected for one set of remaining cells, in an open addressing
+     * table since the dynamic program merges millions of entries
+     */
+    private static final class RewardProbabilities {
+
+        private int[] rewards = new int[8];
+
+        // 0 for a free slot, every stored probability being positive
+        private double[] probabilities = new double[8];
+
+        private int size;
+
+        void add(int reward, double probability) {
+            if (2 * (size + 1) > rewards.length) {
+                grow();
+            }
+            var mask = rewards.length - 1;
+            var hash = reward * 0x9E3779B9;
+            var slot = (hash ^ hash >>> 16) & mask;
+            while (probabilities[slot] != 0.0 && rewards[slot] != reward) {
+                slot = (slot + 1) & mask;
+            }
+            if (probabilities[slot] == 0.0) {
+                rewards[slot] = reward;
+                size++;
+            }
+            probabilities[slot] += probability;
+        }
+
+        /**
+         * Adds every reward of this table, raised by a reward and scaled by a probability, to another table
+         */
+        void addTo(RewardProbabilities target, int reward, double probability) {
+            if (probability == 0.0) {
+                return;
+            }
+            for (int slot = 0; slot < rewards.length; slot++) {
+                if (probabilities[slot] != 0.0) {
+                    target.add(ScratchGameUtility.saturate((long) rewards[slot] + reward),
+                            probabilities[slot] * probability);
+                }
+            }
+        }
+
+        /**
+         * Returns the stored rewards, in the order of {@link #toProbabilities()}
+         */
+        int[] toRewards() {
+            var compact = new int[size];
+            for (int slot = 0, i = 0; slot < rewards.length; slot++) {
+                if (probabilities[slot] != 0.0) {
+                    compact[i++] = rewards[slot];
+                }
+            }
+            return compact;
+        }
+
+        /**
+         * Returns the probabilities of the stored rewards, in the order of {@link #toRewards()}
+         */
+        double[] toProbabilities() {
+            var compact = new double[size];
+            for (int slot = 0, i = 0; slot < rewards.length; slot++) {
+                if (probabilities[slot] != 0.0) {
+                    compact[i++] = probabilities[slot];
+                }
+            }
+            return compact;
+        }
+
+        private void grow() {
+            var oldRewards = rewards;
+            var oldProbabilities = probabilities;
+            rewards = new int[2 * oldRewards.length];
+            probabilities = new double[2 * oldRewards.length];
+            size = 0;
+            for (int slot = 0; slot < oldRewards.length; slot++) {
+                if (oldProbabilities[slot] != 0.0) {
+                    add(oldRewards[slot], oldProbabilities[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Enumerates the bonus symbols over one set of remaining cells in row order and applies them to every
+     * standard reward collected for that set.
+     * <p>
+     * The impacts of the cells assigned so far are applied to the standard rewards on the way down, one table per
+     * depth, so a complete assignment only costs a pass over the final rewards instead of applying every impact to
+     * every reward again. The rewards a bonus symbol wins itself are only known once every cell is assigned, so
+     * the assignments in which one wins a combination apply the impacts again from the start.
+     */
+    private abstract class BonusStage {
+
+        final int[] remainingCells;
+
+        final int[] bonusSymbols;
+
+        private final int[][] symbolRewards;
+
+        private final int[] standardRewards;
+
+        // Indexed by depth, the standard rewards after the impacts of the cells assigned before
+        private final int[][] impacted;
+
+        // The final rewards of an assignment in which a bonus symbol wins
+        private final int[] rewards;
+
+        private final int[] assigned;
+
+        private final int[] occupancy;
+
+        BonusStage(int remaining, int[] standardRewards, int[] bonusSymbols, int[][] symbolRewards) {
+            this.remainingCells = IntStream.range(0, cells).filter(cell -> (remaining & (1 << cell)) != 0).toArray();
+            this.bonusSymbols = bonusSymbols;
+            this.symbolRewards = symbolRewards;
+            this.standardRewards = standardRewards;
+            this.impacted = new int[remainingCells.length + 1][];
+            impacted[0] = standardRewards;
+            for (int index = 1; index <= remainingCells.length; index++) {
+                impacted[index] = new int[standardRewards.length];
+            }
+            this.rewards = new int[standardRewards.length];
+            this.assigned = new int[remainingCells.length];
+            this.occupancy = new int[bonusSymbols.length];
+        }
+
+        /**
+         * Assigns a bonus symbol to one of the remaining cells, every cell before it being assigned
+         *
+         * @param index The index of the cell in the remaining cells
+         * @param i     The index of the symbol in the bonus symbols
+         */
+        void assign(int index, int i) {
+            assigned[index] = i;
+            occupancy[i] |= 1 << remainingCells[index];
+            var id = bonusSymbols[i];
+            var before = impacted[index];
+            var after = impacted[index + 1];
+            for (int j = 0; j < before.length; j++) {
+                after[j] = symbolTable.applyBonus(id, before[j]);
+            }
+        }
+
+        void unassign(int index, int i) {
+            occupancy[i] &= ~(1 << remainingCells[index]);
+        }
+
+        /**
+         * Returns the final reward of every standard reward once every remaining cell is assigned
+         *
+         * @return The final rewards, indexed like the standard rewards and only valid until the next assignment
+         */
+        int[] finalRewards() {
+            long bonusSymbolReward = 0;
+            for (int i = 0; i < bonusSymbols.length; i++) {
+                bonusSymbolReward += symbolRewards[bonusSymbols[i]][occupancy[i]];
+            }
+            if (bonusSymbolReward == 0) {
+                return impacted[remainingCells.length];
+            }
+            for (int j = 0; j < standardRewards.length; j++) {
+                int reward = ScratchGameUtility.saturate(standardRewards[j] + bonusSymbolReward);
+                for (int index = 0; index < remainingCells.length && reward != 0; index++) {
+                    reward = symbolTable.applyBonus(bonusSymbols[assigned[index]], reward);
+                }
+                rewards[j] = reward;
+            }
+            return rewards;
+        }
+    }
+
+    /**
+     * Like {@link BonusEnumeration}, accumulating the expected payout, the expected squared payout and the hit
+     * frequency instead of the distribution
+     */
+    private class BonusMoments extends BonusStage {
+
+        private final double[] probabilities;
+
+        private final double[] sums = new double[3];
+
+        BonusMoments(int remaining, RewardProbabilities standardRewards, int[] bonusSymbols, int[][] symbolRewards) {
+            super(remaining, standardRewards.toRewards(), bonusSymbols, symbolRewards);
+            this.probabilities = standardRewards.toProbabilities();
+        }
+
+        double[] run() {
+            enumerate(0, 1.0);
+            return sums;
+        }
+
+        private void enumerate(int index, double probability) {
+            if (index == remainingCells.length) {
+                collect(probability);
+                return;
+            }
+            var cell = remainingCells[index];
+            for (int i = 0; i < bonusSymbols.length; i++) {
+                var cellWeight = weights[bonusSymbols[i]][cell];
+                if (cellWeight == 0) {
+                    continue;
+                }
+                assign(index, i);
+                enumerate(index + 1, probability * cellWeight / cellTotals[cell]);
+                unassign(index, i);
+            }
+        }
+
+        private void collect(double probability) {
+            var rewards = finalRewards();
+            for (int j = 0; j < rewards.length; j++) {
+                var reward = rewards[j];
+                if (reward != 0) {
+                    var weight = probabilities[j] * probability;
+                    sums[0] += weight * reward;
+                    sums[1] += weight * reward * (double) reward;
+                    sums[2] += reward > 0 ? weight : 0.0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates the weight of every final reward over the assignments of the bonus symbols to one set of
+     * remaining cells
+     */
+    private class BonusEnumeration extends BonusStage {
+
+        private final BigInteger[] standardWeights;
+
+        private final Map<Long, BigInteger> distribution = new HashMap<>();
+
+        BonusEnumeration(int remaining, List<Map.Entry<Integer, BigInteger>> standardRewards, int[] bonusSymbols,
+                         int[][] symbolRewards) {
+            super(remaining, standardRewards.stream().mapToInt(Map.Entry::getKey).toArray(), bonusSymbols,
+                    symbolRewards);
+            this.standardWeights = standardRewards.stream().map(Map.Entry::getValue).toArray(BigInteger[]::new);
+        }
+
+        Map<Long, BigInteger> run() {
+            enumerate(0, BigInteger.ONE);
+            return distribution;
+        }
+
+        private void enumerate(int index, BigInteger weight) {
+            if (index == remainingCells.length) {
+                collect(weight);
+                return;
+            }
+            var cell = remainingCells[index];
+            for (int i = 0; i < bonusSymbols.length; i++) {
+                var cellWeight = weights[bonusSymbols[i]][cell];
+                if (cellWeight == 0) {
+                    continue;
+                }
+                assign(index, i);
+                enumerate(index + 1, weight.multiply(BigInteger.valueOf(cellWeight)));
+                unassign(index, i);
+            }
+        }
+
+        private void collect(BigInteger weight) {
+            var rewards = finalRewards();
+            for (int j = 0; j < rewards.length; j++) {
+                distribution.merge((long) rewards[j], standardWeights[j].multiply(weight), BigInteger::add);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.romeo.game;
+
+import org.json.simple.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a loaded game configuration together with its compiled sampler and
+ * win combination evaluator. A single instance can be shared by any number of concurrently played rounds.
+ * The contained {@link Symbol}, {@link Probability} and {@link WinCombination} objects must not be
+ * modified once they are handed to the snapshot.
+ */
+public final class GameConfig {
+
+    private final int rows;
+
+    private final int columns;
+
+    private final Map<String, Symbol> symbols;
+
+    private final List<Probability> standardSymbolProbabilities;
+
+    private final Map<String, Integer> bonusSymbolProbabilities;
+
+    private final Map<String, WinCombination> winCombinations;
+
+    private final SymbolSampler symbolSampler;
+
+    private final WinCombinationEvaluator winCombinationEvaluator;
+
+    private final SymbolTable symbolTable;
+
+    // The SHA-256 of the JSON document the configuration was loaded from, null when it was built in code
+    private final String contentHash;
+
+    // The first 64 bits of the content hash, which identify the configuration in journals, shards and ticket pools
+    private final long hashPrefix;
+
+    public GameConfig(int rows, int columns, Map<String, Symbol> symbols,
+                      List<Probability> standardSymbolProbabilities, Map<String, Integer> bonusSymbolProbabilities,
+                      Map<String, WinCombination> winCombinations) {
+        this(rows, columns, symbols, standardSymbolProbabilities, bonusSymbolProbabilities, winCombinations, null);
+    }
+
+    public GameConfig(int rows, int columns, Map<String, Symbol> symbols,
+                      List<Probability> standardSymbolProbabilities, Map<String, Integer> bonusSymbolProbabilities,
+                      Map<String, WinCombination> winCombinations, String contentHash) {
+        this.rows = rows;
+        this.columns = columns;
+        this.symbols = Collections.unmodifiableMap(new LinkedHashMap<>(symbols));
+        this.standardSymbolProbabilities = Collections.unmodifiableList(new ArrayList<>(standardSymbolProbabilities));
+        this.bonusSymbolProbabilities = Collections.unmodifiableMap(new LinkedHashMap<>(bonusSymbolProbabilities));
+        this.winCombinations = Collections.unmodifiableMap(new LinkedHashMap<>(winCombinations));
+        this.symbolSampler = SymbolSampler.compile(rows, columns, this.standardSymbolProbabilities,
+                this.bonusSymbolProbabilities);
+        this.winCombinationEvaluator = WinCombinationEvaluator.compile(rows, columns, this.winCombinations);
+        this.symbolTable = new SymbolTable(symbolSampler, this.symbols, this.bonusSymbolProbabilities);
+        this.contentHash = contentHash;
+        this.hashPrefix = contentHash == null ? 0 : Long.parseUnsignedLong(contentHash.substring(0, 16), 16);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public Map<String, Symbol> getSymbols() {
+        return symbols;
+    }
+
+    public List<Probability> getStandardSymbolProbabilities() {
+        return standardSymbolProbabilities;
+    }
+
+    public Map<String, Integer> getBonusSymbolProbabilities() {
+        return bonusSymbolProbabilities;
+    }
+
+    public Map<String, WinCombination> getWinCombinations() {
+        return winCombinations;
+    }
+
+    public SymbolSampler getSymbolSampler() {
+        return symbolSampler;
+    }
+
+    public WinCombinationEvaluator getWinCombinationEvaluator() {
+        return winCombinationEvaluator;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Returns the value journaled to identify the configuration
+     *
+     * @return The first 64 bits of its content hash, 0 if it has none
+     */
+    public long getHashPrefix() {
+        return hashPrefix;
+    }
+
+    /**
+     * Formats the configuration as a JSON document in the layout of the configuration files, so that loading the
+     * document gives back an equivalent configuration
+     *
+     * @return The JSON document
+     */
+    public String toJson() {
+        var json = new StringBuilder("{\n");
+        json.append("  \"columns\": ").append(columns).append(",\n");
+        json.append("  \"rows\": ").append(rows).append(",\n");
+        json.append("  \"symbols\": {");
+        var first = true;
+        for (Map.Entry<String, Symbol> entry : symbols.entrySet()) {
+            var symbol = entry.getValue();
+            json.append(first ? "\n    " : ",\n    ").append(quote(entry.getKey())).append(": {\n");
+            List<String> fields = new ArrayList<>();
+            if (symbol.rewardMultiplier != 0 || "standard".equals(symbol.getType())) {
+                fields.add("\"reward_multiplier\": " + number(symbol.rewardMultiplier));
+            }
+            if (symbol.getExtra() != 0) {
+                fields.add("\"extra\": " + symbol.getExtra());
+            }
+            if (symbol.getType() != null) {
+                fields.add("\"type\": " + quote(symbol.getType()));
+            }
+            if (symbol.getImpact() != null) {
+                fields.add("\"impact\": " + quote(symbol.getImpact()));
+            }
+            json.append("      ").append(String.join(",\n      ", fields)).append("\n    }");
+            first = false;
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"probabilities\": {\n    \"standard_symbols\": [");
+        first = true;
+        for (Probability probability : standardSymbolProbabilities) {
+            json.append(first ? "\n      {\n" : ",\n      {\n");
+            json.append("        \"column\": ").append(probability.getColumn()).append(",\n");
+            json.append("        \"row\": ").append(probability.getRow()).append(",\n");
+            json.append("        \"symbols\": ");
+            appendWeights(json, probability.symbolProbabilities, "        ");
+            json.append("\n      }");
+            first = false;
+        }
+        json.append("\n    ]");
+        if (!bonusSymbolProbabilities.isEmpty()) {
+            json.append(",\n    \"bonus_symbols\": {\n      \"symbols\": ");
+            appendWeights(json, bonusSymbolProbabilities, "      ");
+            json.append("\n    }");
+        }
+        json.append("\n  },\n");
+
+        json.append("  \"win_combinations\": {");
+        first = true;
+        for (Map.Entry<String, WinCombination> entry : winCombinations.entrySet()) {
+            var winCombination = entry.getValue();
+            json.append(first ? "\n    " : ",\n    ").append(quote(entry.getKey())).append(": {\n");
+            json.append("      \"reward_multiplier\": ").append(number(winCombination.rewardMultiplier));
+            if (winCombination.when != null) {
+                json.append(",\n      \"when\": ").append(quote(winCombination.when));
+            }
+            if (winCombination.count != 0) {
+                json.append(",\n      \"count\": ").append(winCombination.count);
+            }
+            if (winCombination.group != null) {
+                json.append(",\n      \"group\": ").append(quote(winCombination.group));
+            }
+            if (!winCombination.coveredAreas.isEmpty()) {
+                json.append(",\n      \"covered_areas\": [");
+                for (int area = 0; area < winCombination.coveredAreas.size(); area++) {
+                    json.append(area == 0 ? "\n        [" : ",\n        [");
+                    var cells = winCombination.coveredAreas.get(area);
+                    for (int cell = 0; cell < cells.size(); cell++) {
+                        json.append(cell == 0 ? "" : ", ").append(quote(cells.get(cell)));
+                    }
+                    json.append(']');
+                }
+                json.append("\n      ]");
+            }
+            json.append("\n    }");
+            first = false;
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+
+    private static void appendWeights(StringBuilder json, Map<String, Integer> weights, String indent) {
+        json.append('{');
+        var first = true;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            json.append(first ? "\n  " : ",\n  ").append(indent).append(quote(entry.getKey())).append(": ")
+                    .append(entry.getValue());
+            first = false;
+        }
+        json.append('\n').append(indent).append('}');
+    }
+
+    private static String quote(String value) {
+        return "\"" + JSONObject.escape(value) + "\"";
+    }
+
+    /**
+     * Formats a multiplier like the configuration files do, without a fraction for whole numbers
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+}
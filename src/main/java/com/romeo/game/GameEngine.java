@@ -0,0 +1,244 @@
+package com.romeo.game;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Plays rounds of the scratch game against a loaded {@link GameConfig}.
+ * <p>
+ * The engine holds no mutable state apart from its thread-safe {@link PayoutCache}, so one instance can be used
+ * from any number of threads at once as long as every thread supplies its own random number generator and
+ * {@link RoundContext}.
+ * An engine created with {@link GameMetrics} times every phase of a round and counts its outcome.
+ */
+public class GameEngine {
+
+    private final GameConfig config;
+
+    // Null when the engine is not instrumented
+    private final GameMetrics.ConfigCounters counters;
+
+    // Shared by all threads playing on this engine, see PayoutCache
+    private final PayoutCache payouts;
+
+    private final ResultWriter resultWriter;
+
+    public GameEngine(GameConfig config) {
+        this(config, null);
+    }
+
+    public GameEngine(GameConfig config, GameMetrics metrics) {
+        this.config = config;
+        this.counters = metrics == null ? null : metrics.countersFor(config);
+        this.payouts = new PayoutCache(config, PayoutCache.DEFAULT_CAPACITY);
+        this.resultWriter = new ResultWriter(config);
+    }
+
+    /**
+     * Plays a round using the current thread's random number generator
+     *
+     * @param bettingAmount The betting amount
+     * @return The result of the round
+     */
+    public RoundResult play(int bettingAmount) {
+        return play(bettingAmount, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Plays a round
+     *
+     * @param bettingAmount The betting amount
+     * @param random        The random number generator, not shared with other threads
+     * @return The result of the round
+     */
+    public RoundResult play(int bettingAmount, RandomGenerator random) {
+        var context = newContext();
+        play(bettingAmount, random, context);
+        return context.toRoundResult();
+    }
+
+    /**
+     * Plays a round without allocating, leaving its state in the given context
+     *
+     * @param bettingAmount The betting amount
+     * @param random        The random number generator, not shared with other threads
+     * @param context       The context of the calling thread, created by {@link #newContext()}
+     * @return The reward of the round
+     */
+    public int play(int bettingAmount, RandomGenerator random, RoundContext context) {
+        if (counters != null) {
+            return playInstrumented(bettingAmount, random, context);
+        }
+        context.reset();
+        generateMatrix(random, context);
+        evaluateWinCombinations(context);
+        context.reward = calculateStandardSymbolReward(bettingAmount, context);
+        context.reward = calculateBonusSymbolReward(context.reward, context);
+        return context.reward;
+    }
+
+    /**
+     * Plays a round like {@link #play(int, RandomGenerator, RoundContext)}, timing every phase
+     */
+    private int playInstrumented(int bettingAmount, RandomGenerator random, RoundContext context) {
+        var metrics = counters.getMetrics();
+        var start = System.nanoTime();
+        context.reset();
+        generateMatrix(random, context);
+        var generated = System.nanoTime();
+        evaluateWinCombinations(context);
+        var evaluated = System.nanoTime();
+        context.reward = calculateStandardSymbolReward(bettingAmount, context);
+        var rewarded = System.nanoTime();
+        context.reward = calculateBonusSymbolReward(context.reward, context);
+        var end = System.nanoTime();
+
+        metrics.recordLatency(GameMetrics.Phase.MATRIX_GENERATION, generated - start);
+        metrics.recordLatency(GameMetrics.Phase.WIN_EVALUATION, evaluated - generated);
+        metrics.recordLatency(GameMetrics.Phase.STANDARD_REWARD, rewarded - evaluated);
+        metrics.recordLatency(GameMetrics.Phase.BONUS_APPLICATION, end - rewarded);
+        counters.recordRound(bettingAmount, context);
+        return context.reward;
+    }
+
+    /**
+     * Creates the working memory for playing rounds on one thread
+     *
+     * @return A new round context
+     */
+    public RoundContext newContext() {
+        return new RoundContext(config);
+    }
+
+    /**
+     * Creates the working memory for playing rounds in batches on one thread, evaluated with the fastest
+     * {@link BatchEvaluator} available for the run
+     *
+     * @param capacity The number of rounds per batch
+     * @param rounds   The number of rounds the whole run plays in batches, over all threads
+     * @return A new batch
+     */
+    public MatrixBatch newBatch(int capacity, long rounds) {
+        return new MatrixBatch(config, BatchEvaluator.create(config, rounds), capacity);
+    }
+
+    /**
+     * Plays a batch of rounds, consuming the generator exactly like playing them one at a time and giving the same
+     * rewards and applied combinations
+     *
+     * @param bettingAmount The betting amount of every round
+     * @param random        The random number generator, not shared with other threads
+     * @param batch         The batch of the calling thread, created by {@link #newBatch(int, long)}
+     * @param rounds        The number of rounds, at most the capacity of the batch
+     */
+    public void playBatch(int bettingAmount, RandomGenerator random, MatrixBatch batch, int rounds) {
+        batch.generate(random, rounds);
+        batch.getEvaluator().evaluate(batch);
+        var symbolTable = config.getSymbolTable();
+        var symbols = symbolTable.size();
+        var cells = batch.getCellCount();
+        for (int lane = 0; lane < rounds; lane++) {
+            long standardReward = 0;
+            for (int id = 0; id < symbols; id++) {
+                var applied = batch.appliedCombinations[id][lane];
+                if (applied != 0) {
+                    standardReward += payouts.reward(id, applied, bettingAmount);
+                }
+            }
+            var reward = ScratchGameUtility.saturate(standardReward);
+            for (int cell = 0; cell < cells && reward != 0; cell++) {
+                reward = symbolTable.applyBonus(batch.cells[cell][lane] & 0xFF, reward);
+            }
+            batch.rewards[lane] = reward;
+        }
+    }
+
+    /**
+     * Draws the symbol ids of every cell, counting them per symbol as they are drawn
+     */
+    private void generateMatrix(RandomGenerator random, RoundContext context) {
+        var sampler = config.getSymbolSampler();
+        var evaluator = config.getWinCombinationEvaluator();
+        var matrix = context.matrix;
+        if (evaluator.isPacked()) {
+            for (int cell = 0; cell < matrix.length; cell++) {
+                var id = sampler.sample(cell, random);
+                matrix[cell] = (byte) id;
+                context.counts[id]++;
+                context.occupancy[id] |= 1L << cell;
+            }
+            return;
+        }
+        var words = evaluator.getBoardWords();
+        var columns = config.getColumns();
+        for (int cell = 0, row = 0; row < config.getRows(); row++) {
+            for (int column = 0; column < columns; column++, cell++) {
+                var id = sampler.sample(cell, random);
+                matrix[cell] = (byte) id;
+                context.counts[id]++;
+                context.occupancy[id * words + row] |= 1L << column;
+            }
+        }
+    }
+
+    /**
+     * Evaluates the win combinations of every symbol appearing often enough
+     */
+    private void evaluateWinCombinations(RoundContext context) {
+        var evaluator = config.getWinCombinationEvaluator();
+        var symbolTable = config.getSymbolTable();
+        var words = evaluator.getBoardWords();
+        for (int id = 0; id < context.counts.length; id++) {
+            if (context.counts[id] >= WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                context.appliedCombinations[id] = evaluator.evaluate(context.occupancy, id * words,
+                        context.counts[id], symbolTable.isMiss(id), context.scratch);
+            }
+        }
+    }
+
+    /**
+     * Sums the rewards of the symbols with applied win combinations, clamped to the range of an int
+     */
+    private int calculateStandardSymbolReward(int bettingAmount, RoundContext context) {
+        long reward = 0;
+        for (int id = 0; id < context.counts.length; id++) {
+            var applied = context.appliedCombinations[id];
+            if (applied != 0) {
+                reward += payouts.reward(id, applied, bettingAmount);
+            }
+        }
+        return ScratchGameUtility.saturate(reward);
+    }
+
+    /**
+     * Applies the bonus impact of every cell in row order
+     */
+    private int calculateBonusSymbolReward(int reward, RoundContext context) {
+        var symbolTable = config.getSymbolTable();
+        var matrix = context.matrix;
+        for (int cell = 0; cell < matrix.length && reward != 0; cell++) {
+            reward = symbolTable.applyBonus(matrix[cell] & 0xFF, reward);
+        }
+        return reward;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the writer serializing the rounds played on this engine
+     */
+    public ResultWriter getResultWriter() {
+        return resultWriter;
+    }
+
+    /**
+     * Returns the metrics the engine records to
+     *
+     * @return The metrics, null if the engine is not instrumented
+     */
+    public GameMetrics getMetrics() {
+        return counters == null ? null : counters.getMetrics();
+    }
+}
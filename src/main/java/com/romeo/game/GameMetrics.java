@@ -0,0 +1,301 @@
+package com.romeo.game;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Live instrumentation of the rounds played by one or more {@link GameEngine}s.
+ * <p>
+ * Counters are {@link LongAdder}s, so threads playing rounds concurrently do not contend on them, and every
+ * phase of a round has its own {@link LatencyHistogram}. Hits are counted by win combination and bonus symbol
+ * name, so the counts carry over when a reloaded configuration replaces the engine. The metrics are published as
+ * an MXBean and can be dumped periodically as JSON.
+ */
+public class GameMetrics implements GameMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.romeo.game:type=GameMetrics";
+
+    /**
+     * The timed phases of a round
+     */
+    public enum Phase {
+        MATRIX_GENERATION,
+        WIN_EVALUATION,
+        STANDARD_REWARD,
+        BONUS_APPLICATION,
+        SERIALIZATION;
+
+        String key() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final LongAdder rounds = new LongAdder();
+
+    private final LongAdder totalBet = new LongAdder();
+
+    private final LongAdder totalPaid = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final Map<Phase, LatencyHistogram> latencies = new EnumMap<>(Phase.class);
+
+    private final Map<String, LongAdder> winCombinationHits = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> bonusSymbolHits = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService dumper;
+
+    public GameMetrics() {
+        for (Phase phase : Phase.values()) {
+            latencies.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Resolves the hit counters of a configuration's win combinations and bonus symbols once, so rounds can
+     * count hits by id
+     *
+     * @param config The configuration
+     * @return The counters of the configuration
+     */
+    public ConfigCounters countersFor(GameConfig config) {
+        return new ConfigCounters(config);
+    }
+
+    /**
+     * Records the latency of a phase
+     *
+     * @param phase The phase
+     * @param nanos The latency in nanoseconds
+     */
+    public void recordLatency(Phase phase, long nanos) {
+        latencies.get(phase).record(nanos);
+    }
+
+    public LatencyHistogram getLatency(Phase phase) {
+        return latencies.get(phase);
+    }
+
+    /**
+     * Publishes the metrics on the platform MBean server
+     *
+     * @throws JMException If the MBean cannot be registered
+     */
+    public void registerMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    /**
+     * Prints the metrics as JSON at a fixed rate on a daemon thread
+     *
+     * @param period The time between two dumps
+     * @param out    The stream the dumps are printed to
+     */
+    public synchronized void startDump(Duration period, PrintStream out) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().name("metrics-dump").daemon().unstarted(runnable));
+        dumper.scheduleAtFixedRate(() -> out.println(toJson()), period.toMillis(), period.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    @Override
+    public long getRounds() {
+        return rounds.sum();
+    }
+
+    @Override
+    public long getTotalBet() {
+        return totalBet.sum();
+    }
+
+    @Override
+    public long getTotalPaid() {
+        return totalPaid.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public double getObservedRtp() {
+        var bet = totalBet.sum();
+        return bet == 0 ? 0 : (double) totalPaid.sum() / bet;
+    }
+
+    @Override
+    public double getHitFrequency() {
+        var played = rounds.sum();
+        return played == 0 ? 0 : (double) hits.sum() / played;
+    }
+
+    @Override
+    public Map<String, Long> getWinCombinationHits() {
+        return sums(winCombinationHits);
+    }
+
+    @Override
+    public Map<String, Long> getBonusSymbolHits() {
+        return sums(bonusSymbolHits);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyCounts() {
+        return byPhase(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50() {
+        return byPhase(histogram -> histogram.getPercentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99() {
+        return byPhase(histogram -> histogram.getPercentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP999() {
+        return byPhase(histogram -> histogram.getPercentile(99.9));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMax() {
+        return byPhase(LatencyHistogram::getMax);
+    }
+
+    @Override
+    public String toJson() {
+        var json = new StringBuilder("{\n");
+        json.append("\"rounds\": ").append(getRounds()).append(",\n");
+        json.append("\"total_bet\": ").append(getTotalBet()).append(",\n");
+        json.append("\"total_paid\": ").append(getTotalPaid()).append(",\n");
+        json.append("\"observed_rtp\": ").append(getObservedRtp()).append(",\n");
+        json.append("\"hit_frequency\": ").append(getHitFrequency()).append(",\n");
+        json.append("\"latency_nanos\": {");
+        var first = true;
+        for (Map.Entry<Phase, LatencyHistogram> entry : latencies.entrySet()) {
+            var histogram = entry.getValue();
+            json.append(first ? "\n" : ",\n").append('"').append(entry.getKey().key()).append("\": {")
+                    .append("\"count\": ").append(histogram.getCount())
+                    .append(", \"mean\": ").append(histogram.getMean())
+                    .append(", \"p50\": ").append(histogram.getPercentile(50))
+                    .append(", \"p90\": ").append(histogram.getPercentile(90))
+                    .append(", \"p99\": ").append(histogram.getPercentile(99))
+                    .append(", \"p999\": ").append(histogram.getPercentile(99.9))
+                    .append(", \"max\": ").append(histogram.getMax()).append('}');
+            first = false;
+        }
+        json.append("\n},\n\"win_combinations\": ");
+        appendCounts(json, getWinCombinationHits());
+        json.append(",\n\"bonus_symbols\": ");
+        appendCounts(json, getBonusSymbolHits());
+        return json.append("\n}").toString();
+    }
+
+    private Map<String, Long> byPhase(Function<LatencyHistogram, Long> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Map.Entry<Phase, LatencyHistogram> entry : latencies.entrySet()) {
+            values.put(entry.getKey().key(), value.apply(entry.getValue()));
+        }
+        return values;
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+        counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+        return sums;
+    }
+
+    private static void appendCounts(StringBuilder json, Map<String, Long> counts) {
+        json.append('{');
+        var first = true;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+            first = false;
+        }
+        json.append('}');
+    }
+
+    /**
+     * The counters of one configuration, indexed by its compiled combination ids and interned symbol ids
+     */
+    public final class ConfigCounters {
+
+        private final LongAdder[] winCombinations;
+
+        // Null for symbols that are not counted as bonus symbols
+        private final LongAdder[] bonusSymbols;
+
+        private ConfigCounters(GameConfig config) {
+            var evaluator = config.getWinCombinationEvaluator();
+            winCombinations = new LongAdder[evaluator.getCombinationCount()];
+            for (int id = 0; id < winCombinations.length; id++) {
+                winCombinations[id] = winCombinationHits.computeIfAbsent(evaluator.getCombinationKey(id),
+                        key -> new LongAdder());
+            }
+            var symbolTable = config.getSymbolTable();
+            bonusSymbols = new LongAdder[symbolTable.size()];
+            for (int id = 0; id < bonusSymbols.length; id++) {
+                if (symbolTable.isAppliedBonus(id)) {
+                    bonusSymbols[id] = bonusSymbolHits.computeIfAbsent(symbolTable.getName(id),
+                            key -> new LongAdder());
+                }
+            }
+        }
+
+        /**
+         * Records a finished round
+         *
+         * @param bettingAmount The betting amount
+         * @param context       The context holding the round
+         */
+        public void recordRound(int bettingAmount, RoundContext context) {
+            rounds.increment();
+            totalBet.add(bettingAmount);
+            totalPaid.add(context.reward);
+            if (context.reward > 0) {
+                hits.increment();
+            }
+            for (long applied : context.appliedCombinations) {
+                while (applied != 0) {
+                    winCombinations[Long.numberOfTrailingZeros(applied)].increment();
+                    applied &= applied - 1;
+                }
+            }
+            for (byte id : context.matrix) {
+                var counter = bonusSymbols[id & 0xFF];
+                if (counter != null) {
+                    counter.increment();
+                }
+            }
+        }
+
+        public GameMetrics getMetrics() {
+            return GameMetrics.this;
+        }
+    }
+}
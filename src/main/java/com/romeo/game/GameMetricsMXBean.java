@@ -0,0 +1,41 @@
+package com.romeo.game;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link GameMetrics}, published under {@value GameMetrics#OBJECT_NAME}.
+ * Latencies are in nanoseconds and keyed by phase.
+ */
+public interface GameMetricsMXBean {
+
+    long getRounds();
+
+    long getTotalBet();
+
+    long getTotalPaid();
+
+    long getHits();
+
+    double getObservedRtp();
+
+    double getHitFrequency();
+
+    Map<String, Long> getWinCombinationHits();
+
+    Map<String, Long> getBonusSymbolHits();
+
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Long> getLatencyP50();
+
+    Map<String, Long> getLatencyP99();
+
+    Map<String, Long> getLatencyP999();
+
+    Map<String, Long> getLatencyMax();
+
+    /**
+     * Returns every metric as a JSON document
+     */
+    String toJson();
+}
@@ -0,0 +1,348 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Serves many game variants from one process, each game being a {@code <gameId>.json} configuration file in a
+ * directory.
+ * <p>
+ * Games are loaded on first use and kept as compiled engines in a least recently used cache of bounded size.
+ * Concurrent requests for a game that is not loaded yet share a single load, so a burst of requests hitting a
+ * cold game compiles it once. A loaded game is checked against its file at most every {@value #REVALIDATE_MILLIS}
+ * ms and replaced when its content hash changed, while a file that cannot be loaded leaves the current version
+ * in use.
+ * <p>
+ * Rounds are played on a {@link Lease}, which pins one version of a game: an evicted or replaced version stays
+ * usable until its last lease is closed and is only retired then.
+ */
+public class GameRegistry {
+
+    // How long a loaded game is served before its file is checked for changes
+    static final long REVALIDATE_MILLIS = 1000;
+
+    // Game ids name files in the games directory, so they may not contain path separators
+    private static final Pattern GAME_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final Path directory;
+
+    private final int capacity;
+
+    // The metrics every engine records to, may be null
+    private final GameMetrics metrics;
+
+    // In access order, the least recently used game first
+    private final Map<String, CompletableFuture<Version>> games = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final AtomicLong retirements = new AtomicLong();
+
+    public GameRegistry(Path directory, int capacity) {
+        this(directory, capacity, null);
+    }
+
+    public GameRegistry(Path directory, int capacity, GameMetrics metrics) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.directory = directory.toAbsolutePath().normalize();
+        this.capacity = capacity;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Whether a game exists in the games directory
+     *
+     * @param gameId The game id
+     * @return true if the game's configuration file exists
+     */
+    public boolean exists(String gameId) {
+        return GAME_ID.matcher(gameId).matches() && Files.isRegularFile(configFile(gameId));
+    }
+
+    /**
+     * Leases the current version of a game, loading it if needed. The lease must be closed once the rounds
+     * played on it are finished.
+     *
+     * @param gameId The game id
+     * @return The lease
+     * @throws ConfigurationException If the game does not exist or its configuration cannot be loaded
+     */
+    public Lease acquire(String gameId) {
+        if (!GAME_ID.matcher(gameId).matches()) {
+            throw new ConfigurationException("Invalid game id: " + gameId);
+        }
+        while (true) {
+            CompletableFuture<Version> future;
+            var loader = false;
+            synchronized (games) {
+                future = games.get(gameId);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    games.put(gameId, future);
+                    loader = true;
+                }
+            }
+            if (loader) {
+                load(gameId, future);
+            }
+            Version version;
+            try {
+                version = future.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof ConfigurationException configurationException
+                        ? configurationException
+                        : new ConfigurationException("Unable to load game " + gameId, e.getCause());
+            }
+            if (!loader) {
+                revalidate(version);
+            }
+            // A version retired since it was looked up is replaced, so the next attempt finds its successor
+            if (version.retain()) {
+                return new Lease(version);
+            }
+        }
+    }
+
+    /**
+     * Loads a game for the first time, completing the future every concurrent request waits on
+     */
+    private void load(String gameId, CompletableFuture<Version> future) {
+        try {
+            var version = loadVersion(gameId);
+            future.complete(version);
+            evictLeastRecentlyUsed();
+        } catch (Throwable e) {
+            // Every failure completes the future, or the requests waiting on it would wait forever
+            synchronized (games) {
+                games.remove(gameId, future);
+            }
+            future.completeExceptionally(e);
+            if (e instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    private Version loadVersion(String gameId) {
+        var file = configFile(gameId);
+        FileTime lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new ConfigurationException("Unknown game: " + gameId, e);
+        }
+        var config = LoadConfigurationFile.loadConfig(file.toString());
+        loads.incrementAndGet();
+        return new Version(gameId, new GameEngine(config, metrics), lastModified);
+    }
+
+    /**
+     * Replaces a version whose file changed, on the thread of the first request noticing it. Other requests keep
+     * using the current version meanwhile.
+     */
+    private void revalidate(Version version) {
+        var now = System.nanoTime();
+        if (now - version.checkedAt < TimeUnit.MILLISECONDS.toNanos(REVALIDATE_MILLIS)
+                || !version.reloading.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            var file = configFile(version.gameId);
+            if (version.lastModified.equals(Files.getLastModifiedTime(file))) {
+                return;
+            }
+            var next = loadVersion(version.gameId);
+            var contentHash = version.engine.getConfig().getContentHash();
+            if (contentHash != null && contentHash.equals(next.engine.getConfig().getContentHash())) {
+                version.lastModified = next.lastModified;
+                next.release();
+                return;
+            }
+            synchronized (games) {
+                var current = games.get(version.gameId);
+                if (current == null || current.getNow(null) != version) {
+                    // Evicted or replaced meanwhile, so the loaded version is never published
+                    next.release();
+                    return;
+                }
+                games.put(version.gameId, CompletableFuture.completedFuture(next));
+            }
+            System.err.println("Reloaded game " + version.gameId + " ("
+                    + next.engine.getConfig().getContentHash() + ")");
+            version.release();
+        } catch (IOException | ConfigurationException e) {
+            System.err.println("Keeping the current configuration of game " + version.gameId + ": " + e.getMessage());
+        } finally {
+            version.checkedAt = System.nanoTime();
+            version.reloading.set(false);
+        }
+    }
+
+    /**
+     * Drops the least recently used loaded games beyond the capacity, leaving games still loading in place
+     */
+    private void evictLeastRecentlyUsed() {
+        List<Version> evicted = new ArrayList<>();
+        synchronized (games) {
+            var iterator = games.values().iterator();
+            var excess = games.size() - capacity;
+            while (excess > 0 && iterator.hasNext()) {
+                var future = iterator.next();
+                var version = future.getNow(null);
+                if (version != null) {
+                    iterator.remove();
+                    evicted.add(version);
+                    excess--;
+                }
+            }
+        }
+        for (Version version : evicted) {
+            evictions.incrementAndGet();
+            version.release();
+        }
+    }
+
+    private Path configFile(String gameId) {
+        return directory.resolve(gameId + ".json");
+    }
+
+    /**
+     * Returns the ids of the loaded games, the least recently used first
+     */
+    public List<String> getLoadedGames() {
+        synchronized (games) {
+            return new ArrayList<>(games.keySet());
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the metrics the engines record to
+     *
+     * @return The metrics, null if the engines are not instrumented
+     */
+    public GameMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Formats the number of loaded games and how often games were loaded, evicted and retired
+     *
+     * @return The JSON report
+     */
+    public String toJson() {
+        var json = new StringBuilder("{\n");
+        json.append("\"capacity\": ").append(capacity).append(",\n");
+        json.append("\"loaded\": [");
+        var first = true;
+        for (String gameId : getLoadedGames()) {
+            json.append(first ? "\"" : ", \"").append(gameId).append('"');
+            first = false;
+        }
+        json.append("],\n");
+        json.append("\"loads\": ").append(loads.get()).append(",\n");
+        json.append("\"evictions\": ").append(evictions.get()).append(",\n");
+        json.append("\"retirements\": ").append(retirements.get()).append('\n');
+        return json.append('}').toString();
+    }
+
+    /**
+     * A version of a game, counting the registry's own reference and every open lease
+     */
+    private final class Version {
+
+        private final String gameId;
+
+        private final GameEngine engine;
+
+        private volatile FileTime lastModified;
+
+        private volatile long checkedAt = System.nanoTime();
+
+        private final AtomicBoolean reloading = new AtomicBoolean();
+
+        // Starts with the registry's reference, 0 once retired
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        Version(String gameId, GameEngine engine, FileTime lastModified) {
+            this.gameId = gameId;
+            this.engine = engine;
+            this.lastModified = lastModified;
+        }
+
+        boolean retain() {
+            while (true) {
+                var current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                retirements.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * One version of a game held for playing rounds. Closing the lease more than once has no effect.
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final Version version;
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(Version version) {
+            this.version = version;
+        }
+
+        public String getGameId() {
+            return version.gameId;
+        }
+
+        public GameEngine getEngine() {
+            return version.engine;
+        }
+
+        public GameConfig getConfig() {
+            return version.engine.getConfig();
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                version.release();
+            }
+        }
+    }
+}
@@ -1,190 +1,130 @@
 package com.romeo.game;
 
 
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 /**
- * Loads the details from configuration file for the scratch game
+ * Loads the details from configuration file for the scratch game.
+ * <p>
+ * The JSON document is parsed as a stream of events straight into the configuration model. When the
+ * {@value #CACHE_PROPERTY} system property names a directory, every loaded configuration is also stored there as a
+ * binary snapshot under the SHA-256 of its document, and later loads of the same document read the memory-mapped
+ * snapshot instead of parsing the JSON. A configuration read from a snapshot is validated like a parsed one.
  */
 public class LoadConfigurationFile {
 
+    // The system property naming the directory of the compiled configuration snapshots
+    public static final String CACHE_PROPERTY = "scratch.config.cache";
 
     /**
      * Loads the details from configuration file
      *
-     * @param configFile
+     * @param configFile The path of the configuration file, or the name of a classpath resource if no such file
+     *                   exists
+     * @return The loaded configuration snapshot
+     * @throws ConfigurationException If the configuration cannot be found, read or is invalid
      */
-    public static void loadConfig(String configFile) {
-        try (InputStream inputStream = ScratchGame.class.getClassLoader().getResourceAsStream("config.json")) {
-            if (inputStream == null) {
-                throw new RuntimeException("config.json not found in classpath");
+    public static GameConfig loadConfig(String configFile) {
+        var content = readContent(configFile);
+        var contentHash = sha256(content);
+
+        var cache = System.getProperty(CACHE_PROPERTY);
+        var snapshot = cache == null || cache.isBlank() ? null : new ConfigSnapshot(Path.of(cache));
+        if (snapshot != null) {
+            var config = snapshot.read(contentHash);
+            if (config != null) {
+                // The snapshot may have been written by a version with fewer checks, so it is validated again
+                try {
+                    ConfigValidator.validate(config);
+                } catch (ConfigurationException e) {
+                    throw new ConfigurationException(configFile + ": " + e.getMessage(), e);
+                }
+                return config;
             }
-
-            var parser = new JSONParser();
-            var config = (JSONObject) parser.parse(new InputStreamReader(inputStream));
-
-            ScratchGameUtility.columns = getConfigInteger(config, "columns", 3);
-            ScratchGameUtility.rows = getConfigInteger(config, "rows", 3);
-
-            loadSymbols(config);
-            loadStandardSymbolProbabilities(config);
-            loadBonusSymbolProbabilities(config);
-            loadWinCombinations(config);
-
-        } catch (IOException | ParseException e) {
-            e.printStackTrace();
         }
-    }
-
-    /**
-     * Retrieves an integer configuration value from the JSON object
-     *
-     * @param config       The JSON object containing the configuration
-     * @param key          The key of the configuration value
-     * @param defaultValue The default value to be used if the key is not found
-     * @return The integer configuration value
-     */
-    private static int getConfigInteger(JSONObject config, String key, int defaultValue) {
-        return config.containsKey(key) ? ((Long) config.get(key)).intValue() : defaultValue;
-    }
 
-    /**
-     * Loads the symbols configuration from the JSON object
-     *
-     * @param config The JSON object containing the configuration
-     */
-    private static void loadSymbols(JSONObject config) {
-        JSONObject symbolConfig = (JSONObject) config.get("symbols");
-        for (Object key : symbolConfig.keySet()) {
-            String symbolName = (String) key;
-            JSONObject symbolData = (JSONObject) symbolConfig.get(symbolName);
-
-            Symbol symbol = new Symbol();
-            symbol.rewardMultiplier = getConfigDouble(symbolData, "reward_multiplier", 0.0);
-            symbol.setType((String) symbolData.get("type"));
-            symbol.setExtra(getConfigInteger(symbolData, "extra", 0));
-            symbol.setImpact((String) symbolData.get("impact"));
-
-            ScratchGameUtility.symbols.put(symbolName, symbol);
+        GameConfig config;
+        try {
+            config = parse(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8),
+                    contentHash);
+        } catch (IOException e) {
+            throw new ConfigurationException("Unable to read configuration file " + configFile, e);
+        } catch (ConfigurationException e) {
+            throw new ConfigurationException(configFile + ": " + e.getMessage(), e);
         }
-    }
-
-    /**
-     * Retrieves a double configuration value from the JSON object
-     *
-     * @param object       The JSON object containing the configuration
-     * @param key          The key of the configuration value
-     * @param defaultValue The default value to be used if the key is not found
-     * @return The double configuration value
-     */
-    private static double getConfigDouble(JSONObject object, String key, double defaultValue) {
-        return object.containsKey(key) ? ((Number) object.get(key)).doubleValue() : defaultValue;
-    }
-
-    /**
-     * Loads the standard symbol probabilities configuration from the JSON object
-     *
-     * @param config The JSON object containing the configuration
-     */
-    private static void loadStandardSymbolProbabilities(JSONObject config) {
-        var probabilityConfig = (JSONObject) config.get("probabilities");
-        var standardSymbolProbabilitiesArray = (JSONArray) probabilityConfig.get("standard_symbols");
-        for (Object obj : standardSymbolProbabilitiesArray) {
-            JSONObject probabilityData = (JSONObject) obj;
-            var column = ((Long) probabilityData.get("column")).intValue();
-            var row = ((Long) probabilityData.get("row")).intValue();
-            Map<String, Integer> symbolProbabilities = getSymbolProbabilities(
-                    (JSONObject) probabilityData.get("symbols"));
-            ScratchGameUtility.standardSymbolProbabilities.add(new Probability(column, row, symbolProbabilities));
+        if (snapshot != null) {
+            try {
+                snapshot.write(config);
+            } catch (IOException e) {
+                System.err.println("Unable to write the configuration snapshot to " + cache + ": " + e.getMessage());
+            }
         }
+        return config;
     }
 
     /**
-     * Retrieves symbol probabilities from the JSON object
+     * Loads the details from a configuration document
      *
-     * @param symbolProbabilitiesData The JSON object containing the symbol
-     *                                probabilities
-     * @return The map of symbol probabilities
+     * @param reader The reader supplying the JSON configuration
+     * @return The loaded configuration snapshot, without a content hash
+     * @throws IOException            If the configuration cannot be read
+     * @throws ConfigurationException If the configuration is invalid
      */
-    private static Map<String, Integer> getSymbolProbabilities(JSONObject symbolProbabilitiesData) {
-        Map<String, Integer> symbolProbabilities = new HashMap<>();
-        for (Object symbol : symbolProbabilitiesData.keySet()) {
-            symbolProbabilities.put((String) symbol, ((Long) symbolProbabilitiesData.get(symbol)).intValue());
-        }
-        return symbolProbabilities;
+    public static GameConfig loadConfig(Reader reader) throws IOException {
+        return parse(reader, null);
     }
 
-    /**
-     * Loads the bonus symbol probabilities configuration from the JSON object
-     *
-     * @param config The JSON object containing the configuration
-     */
-    private static void loadBonusSymbolProbabilities(JSONObject config) {
-        var probabilityConfig = (JSONObject) config.get("probabilities");
-
-        var bonusSymbolData = (JSONObject) probabilityConfig.get("bonus_symbols");
-        var bonusSymbolProbabilitiesData = (JSONObject) bonusSymbolData.get("symbols");
-
-        for (Object symbol : bonusSymbolProbabilitiesData.keySet()) {
-            Object value = bonusSymbolProbabilitiesData.get(symbol);
-            if (value instanceof Number) {
-                int intValue = ((Number) value).intValue();
-                ScratchGameUtility.bonusSymbolProbabilities.put((String) symbol, intValue);
-            } else {
-                throw new RuntimeException(
-                        "Invalid value type for bonus symbol probability: " + value.getClass().getName());
-            }
+    private static GameConfig parse(Reader reader, String contentHash) throws IOException {
+        var handler = new ConfigContentHandler();
+        try {
+            new JSONParser().parse(reader, handler);
+        } catch (ParseException e) {
+            throw new ConfigurationException("Invalid JSON: " + e, e);
         }
+        var config = handler.toGameConfig(contentHash);
+        ConfigValidator.validate(config);
+        return config;
     }
 
     /**
-     * Loads the win combinations configuration from the JSON object
-     *
-     * @param config The JSON object containing the configuration
+     * Reads the configuration file, falling back to a classpath resource of the same name
      */
-    private static void loadWinCombinations(JSONObject config) {
-        var winCombinationsConfig = (JSONObject) config.get("win_combinations");
-        for (Object winCombinationName : winCombinationsConfig.keySet()) {
-            JSONObject winCombinationData = (JSONObject) winCombinationsConfig.get(winCombinationName);
-            WinCombination winCombination = new WinCombination();
-            winCombination.rewardMultiplier = getConfigDouble(winCombinationData, "reward_multiplier", 0.0);
-            Long countValue = (Long) winCombinationData.get("count");
-
-            if (countValue != null) {
-                winCombination.count = countValue.intValue();
-            } else {
-                // Handle the case where "count" is not present or is null
-                winCombination.count = 0;
+    private static byte[] readContent(String configFile) {
+        try {
+            var path = Path.of(configFile);
+            if (Files.isRegularFile(path)) {
+                return Files.readAllBytes(path);
             }
-
-
-            winCombination.group = (String) winCombinationData.get("group");
-            winCombination.when = (String) winCombinationData.get("when");
-
-            var coveredAreasArray = (JSONArray) winCombinationData.get("covered_areas");
-            if (coveredAreasArray != null) {
-                for (Object areaObj : coveredAreasArray) {
-                    JSONArray areaArray = (JSONArray) areaObj;
-                    List<String> area = new ArrayList<>();
-                    for (Object cell : areaArray) {
-                        area.add((String) cell);
-                    }
-                    winCombination.coveredAreas.add(area);
+            try (InputStream inputStream = ScratchGame.class.getClassLoader().getResourceAsStream(configFile)) {
+                if (inputStream == null) {
+                    throw new ConfigurationException(
+                            "Configuration file " + configFile + " not found on disk or in the classpath");
                 }
+                return inputStream.readAllBytes();
             }
+        } catch (IOException e) {
+            throw new ConfigurationException("Unable to read configuration file " + configFile, e);
+        }
+    }
 
-            ScratchGameUtility.winCombinations.put((String) winCombinationName, winCombination);
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
         }
     }
 }
@@ -0,0 +1,121 @@
+package com.romeo.game;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Working memory for playing many rounds at once, laid out structure of arrays: one lane per round, and for every
+ * cell position one {@code byte[]} holding that cell of every round. Evaluating the same cell of many matrices
+ * then walks contiguous memory, which lets {@link BatchEvaluator}s process the lanes with vector instructions.
+ * A batch belongs to one thread, like a {@link RoundContext}.
+ */
+public class MatrixBatch {
+
+    // Lanes are allocated in multiples of the widest byte vector, so vector loops never need a scalar tail
+    static final int LANE_ALIGNMENT = 64;
+
+    private final GameConfig config;
+
+    private final BatchEvaluator evaluator;
+
+    // Indexed by cell, then lane, the symbol ids read with & 0xFF
+    final byte[][] cells;
+
+    // Indexed by symbol id, then lane, the bitsets of applied combination ids
+    final long[][] appliedCombinations;
+
+    final int[] rewards;
+
+    private int size;
+
+    MatrixBatch(GameConfig config, BatchEvaluator evaluator, int capacity) {
+        var lanes = (capacity + LANE_ALIGNMENT - 1) / LANE_ALIGNMENT * LANE_ALIGNMENT;
+        this.config = config;
+        this.evaluator = evaluator;
+        this.cells = new byte[config.getRows() * config.getColumns()][lanes];
+        this.appliedCombinations = new long[config.getSymbolTable().size()][lanes];
+        this.rewards = new int[lanes];
+    }
+
+    /**
+     * Draws the matrices of the next rounds, consuming the generator exactly like playing them one at a time
+     *
+     * @param random The random number generator
+     * @param rounds The number of rounds, at most {@link #getCapacity()}
+     */
+    void generate(RandomGenerator random, int rounds) {
+        var sampler = config.getSymbolSampler();
+        for (int lane = 0; lane < rounds; lane++) {
+            for (int cell = 0; cell < cells.length; cell++) {
+                cells[cell][lane] = (byte) sampler.sample(cell, random);
+            }
+        }
+        // Lanes past the last round are evaluated too. They are cleared so their evaluation does not depend on the
+        // batches before, but symbol 0 filling every cell may well win, so their results are garbage never read
+        for (byte[] cell : cells) {
+            Arrays.fill(cell, rounds, cell.length, (byte) 0);
+        }
+        for (long[] applied : appliedCombinations) {
+            Arrays.fill(applied, 0L);
+        }
+        size = rounds;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    BatchEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Returns the number of rounds played in the last batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the largest number of rounds a batch can hold
+     */
+    public int getCapacity() {
+        return rewards.length;
+    }
+
+    public int getCellCount() {
+        return cells.length;
+    }
+
+    /**
+     * Returns the symbol id in a cell of a round of the last batch
+     *
+     * @param lane The round within the batch, below {@link #getSize()}
+     * @param cell The cell, row * columns + column
+     * @return The symbol id
+     */
+    public int getSymbolId(int lane, int cell) {
+        return cells[cell][lane] & 0xFF;
+    }
+
+    /**
+     * Returns the combinations applied to a symbol in a round of the last batch
+     *
+     * @param lane     The round within the batch, below {@link #getSize()}
+     * @param symbolId The symbol id
+     * @return The bitset of applied combination ids
+     */
+    public long getAppliedCombinations(int lane, int symbolId) {
+        return appliedCombinations[symbolId][lane];
+    }
+
+    /**
+     * Returns the reward of a round of the last batch
+     *
+     * @param lane The round within the batch, below {@link #getSize()}
+     * @return The reward
+     */
+    public int getReward(int lane) {
+        return rewards[lane];
+    }
+}
@@ -0,0 +1,205 @@
+package com.romeo.game;
+
+import java.util.Arrays;
+
+/**
+ * A family of win patterns declared by a single win combination instead of listing every covered area, which
+ * grows combinatorially with the matrix size. The combination's {@code count} is the length of the run or the
+ * size of the cluster, for example {@code {"when": "horizontal_run", "count": 5}} applies to any five horizontally
+ * adjacent cells of the same symbol.
+ * <p>
+ * Patterns are matched on a board of one {@code long} per row, bit {@code column} set for the cells holding the
+ * symbol, so runs are found with shifts and ANDs over whole rows and clusters with a flood fill over the rows.
+ */
+public enum PatternFamily {
+
+    // Any run of at least count cells within a row
+    HORIZONTAL_RUN,
+
+    // Any run of at least count cells within a column
+    VERTICAL_RUN,
+
+    // Any run of at least count cells along a diagonal in either direction
+    DIAGONAL_RUN,
+
+    // Any group of at least count cells connected horizontally or vertically
+    CLUSTER;
+
+    /**
+     * Resolves the pattern family of a win combination
+     *
+     * @param when The configured condition of the win combination
+     * @return The pattern family, null if the condition is not a pattern family
+     */
+    public static PatternFamily of(String when) {
+        if (when == null) {
+            return null;
+        }
+        return switch (when) {
+            case "horizontal_run" -> HORIZONTAL_RUN;
+            case "vertical_run" -> VERTICAL_RUN;
+            case "diagonal_run" -> DIAGONAL_RUN;
+            case "cluster" -> CLUSTER;
+            default -> null;
+        };
+    }
+
+    /**
+     * Whether the board holds a run of the given length, for every family but {@link #CLUSTER}
+     *
+     * @param board  The board, one row per element starting at offset
+     * @param offset The index of the first row
+     * @param rows   The number of rows
+     * @param length The minimum run length
+     * @return true if a run of at least length cells exists
+     */
+    boolean hasRun(long[] board, int offset, int rows, int length) {
+        return switch (this) {
+            case HORIZONTAL_RUN -> hasHorizontalRun(board, offset, rows, length);
+            case VERTICAL_RUN -> hasVerticalRun(board, offset, rows, length);
+            case DIAGONAL_RUN -> hasDiagonalRun(board, offset, rows, length);
+            case CLUSTER -> throw new IllegalStateException("Clusters are measured with largestCluster");
+        };
+    }
+
+    /**
+     * Shifts every row against itself, doubling the length of the runs kept on every step
+     */
+    private static boolean hasHorizontalRun(long[] board, int offset, int rows, int length) {
+        for (int row = 0; row < rows; row++) {
+            var runs = board[offset + row];
+            if (Long.bitCount(runs) < length) {
+                continue;
+            }
+            // runs has a bit set where a run of covered cells starts
+            var covered = 1;
+            while (covered < length && runs != 0) {
+                var step = Math.min(covered, length - covered);
+                runs &= runs >>> step;
+                covered += step;
+            }
+            if (runs != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Slides a window of length rows down the board, ANDing the rows inside the window
+     */
+    private static boolean hasVerticalRun(long[] board, int offset, int rows, int length) {
+        for (int row = 0; row + length <= rows; row++) {
+            var runs = board[offset + row];
+            for (int i = 1; i < length && runs != 0; i++) {
+                runs &= board[offset + row + i];
+            }
+            if (runs != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Like the vertical window, shifting every row of the window back to the column its diagonal started in
+     */
+    private static boolean hasDiagonalRun(long[] board, int offset, int rows, int length) {
+        for (int row = 0; row + length <= rows; row++) {
+            var leftToRight = board[offset + row];
+            var rightToLeft = leftToRight;
+            for (int i = 1; i < length && (leftToRight | rightToLeft) != 0; i++) {
+                leftToRight &= board[offset + row + i] >>> i;
+                rightToLeft &= board[offset + row + i] << i;
+            }
+            if ((leftToRight | rightToLeft) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Measures the largest group of horizontally or vertically connected cells, flood filling one group at a
+     * time from its lowest cell and stopping as soon as the remaining cells cannot change the answer
+     *
+     * @param board   The board, one row per element starting at offset
+     * @param offset  The index of the first row
+     * @param rows    The number of rows
+     * @param cells   The number of cells set on the board
+     * @param enough  The cluster size at which the search may stop
+     * @param scratch At least 2 * rows elements of working memory
+     * @return The size of the largest cluster, or a size of at least enough
+     */
+    static int largestCluster(long[] board, int offset, int rows, int cells, int enough, long[] scratch) {
+        // scratch holds the cells not assigned to a cluster yet, followed by the cluster being filled
+        System.arraycopy(board, offset, scratch, 0, rows);
+        var largest = 0;
+        var remaining = cells;
+        var first = 0;
+        while (remaining > largest && largest < enough) {
+            while (scratch[first] == 0) {
+                first++;
+            }
+            var size = fill(scratch, rows, first);
+            largest = Math.max(largest, size);
+            remaining -= size;
+        }
+        return largest;
+    }
+
+    /**
+     * Fills the cluster holding the lowest remaining cell of a row, removing it from the remaining cells
+     *
+     * @return The size of the cluster
+     */
+    private static int fill(long[] scratch, int rows, int first) {
+        Arrays.fill(scratch, rows, 2 * rows, 0L);
+        scratch[rows + first] = Long.lowestOneBit(scratch[first]);
+        var last = first;
+        var changed = true;
+        while (changed) {
+            changed = false;
+            // Sweep down then up, so a cluster spreading in one direction is filled in a single pass
+            for (int row = first; row <= Math.min(last + 1, rows - 1); row++) {
+                if (grow(scratch, rows, row)) {
+                    last = Math.max(last, row);
+                    changed = true;
+                }
+            }
+            for (int row = last; row >= first; row--) {
+                changed |= grow(scratch, rows, row);
+            }
+        }
+        var size = 0;
+        for (int row = first; row <= last; row++) {
+            size += Long.bitCount(scratch[rows + row]);
+            scratch[row] &= ~scratch[rows + row];
+        }
+        return size;
+    }
+
+    /**
+     * Grows the cluster in a row by its neighbours in the rows above and below, then along the row
+     *
+     * @return true if the cluster grew
+     */
+    private static boolean grow(long[] scratch, int rows, int row) {
+        var available = scratch[row];
+        var current = scratch[rows + row];
+        var grown = current;
+        if (row > 0) {
+            grown |= scratch[rows + row - 1] & available;
+        }
+        if (row + 1 < rows) {
+            grown |= scratch[rows + row + 1] & available;
+        }
+        var previous = 0L;
+        while (grown != previous) {
+            previous = grown;
+            grown |= ((grown << 1) | (grown >>> 1)) & available;
+        }
+        scratch[rows + row] = grown;
+        return grown != current;
+    }
+}
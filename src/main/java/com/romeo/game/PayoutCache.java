@@ -0,0 +1,103 @@
+package com.romeo.game;
+
+/**
+ * Memoizes the reward multiplier of a symbol for a set of applied win combinations.
+ * <p>
+ * A configuration only has a handful of distinct winning outcomes per symbol, so after warming up the reward of a
+ * winning symbol is a single lookup and multiplication by the bet instead of one floating point multiplication per
+ * applied combination, whatever the betting amounts played. The cache is a direct-mapped table of immutable
+ * entries: a colliding outcome simply replaces the entry in its slot, which bounds the memory for configurations
+ * with many symbols and combinations. Entries are published through their final fields, so the table can be shared
+ * by any number of threads without locking; a lost race only costs a recomputation.
+ * <p>
+ * The reward is defined as the bet multiplied by every multiplier in turn, truncated, and multiplying the bet by
+ * the precomputed product can round differently. A product is therefore only cached when it was computed without
+ * rounding and has few enough significant bits that its product with any int is exact too, which holds for the
+ * whole, half and quarter multipliers of a usual configuration. Then both orders give the exact value. Any other
+ * outcome is recomputed in order on every lookup.
+ */
+class PayoutCache {
+
+    // The number of slots of an engine's cache, a power of two
+    static final int DEFAULT_CAPACITY = 1 << 12;
+
+    // The significant bits of a cached product, leaving room in a double for the 31 of a betting amount
+    private static final int MAX_PRODUCT_BITS = 53 - 31;
+
+    // The largest binary exponent of a cached product and its partial products, so none overflows with a bet
+    private static final int MAX_PRODUCT_EXPONENT = Double.MAX_EXPONENT - 32;
+
+    private final GameConfig config;
+
+    private final Entry[] entries;
+
+    private final int mask;
+
+    PayoutCache(GameConfig config, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.config = config;
+        this.entries = new Entry[capacity];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Returns the reward of a symbol, exactly as truncated by
+     * {@link ScratchGameUtility#calculateSymbolReward(GameConfig, int, long, int)}
+     *
+     * @param symbolId      The interned symbol id
+     * @param applied       The bitset of applied combination ids, not 0
+     * @param bettingAmount The betting amount
+     * @return The reward of the symbol
+     */
+    int reward(int symbolId, long applied, int bettingAmount) {
+        var slot = (int) RoundRandomSource.mix(applied * 0x9E3779B97F4A7C15L + symbolId) & mask;
+        var entry = entries[slot];
+        if (entry == null || entry.applied != applied || entry.symbolId != symbolId) {
+            entry = new Entry(applied, symbolId, exactMultiplier(symbolId, applied));
+            entries[slot] = entry;
+        }
+        if (Double.isNaN(entry.multiplier)) {
+            return (int) ScratchGameUtility.calculateSymbolReward(config, symbolId, applied, bettingAmount);
+        }
+        return (int) (bettingAmount * entry.multiplier);
+    }
+
+    /**
+     * Multiplies the symbol's reward multiplier by those of the applied combinations
+     *
+     * @return The product, NaN if multiplying a betting amount by it might not be exact
+     */
+    private double exactMultiplier(int symbolId, long applied) {
+        if (config.getSymbolTable().getSymbol(symbolId) == null) {
+            return 0.0;
+        }
+        var evaluator = config.getWinCombinationEvaluator();
+        var product = config.getSymbolTable().getRewardMultiplier(symbolId);
+        while (applied != 0) {
+            var multiplier = evaluator.getRewardMultiplier(Long.numberOfTrailingZeros(applied));
+            var next = product * multiplier;
+            // The rounding error of a step, 0 if it is exact
+            if (Math.getExponent(product) > MAX_PRODUCT_EXPONENT || Math.fma(product, multiplier, -next) != 0) {
+                return Double.NaN;
+            }
+            product = next;
+            applied &= applied - 1;
+        }
+        if (product == 0) {
+            return product;
+        }
+        if (Math.getExponent(product) > MAX_PRODUCT_EXPONENT || Math.getExponent(product) < Double.MIN_EXPONENT) {
+            return Double.NaN;
+        }
+        var significand = Double.doubleToRawLongBits(product) & (1L << 52) - 1 | 1L << 52;
+        return 53 - Long.numberOfTrailingZeros(significand) <= MAX_PRODUCT_BITS ? product : Double.NaN;
+    }
+
+    /**
+     * The win signature of a symbol and its reward multiplier, NaN if the reward is recomputed on every lookup
+     */
+    private record Entry(long applied, int symbolId, double multiplier) {
+    }
+}
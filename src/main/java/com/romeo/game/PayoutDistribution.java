@@ -0,0 +1,134 @@
+package com.romeo.game;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The exact probability distribution of the payout of a single round. Probabilities are kept as integer
+ * weights over a common denominator, the product of the total symbol weights of all cells.
+ */
+public class PayoutDistribution {
+
+    // The precision of the decimal figures derived from the exact weights
+    private static final MathContext PRECISION = new MathContext(34);
+
+    private final int bettingAmount;
+
+    private final SortedMap<Long, BigInteger> weights;
+
+    private final BigInteger totalWeight;
+
+    public PayoutDistribution(int bettingAmount, Map<Long, BigInteger> weights, BigInteger totalWeight) {
+        this.bettingAmount = bettingAmount;
+        this.weights = Collections.unmodifiableSortedMap(new TreeMap<>(weights));
+        this.totalWeight = totalWeight;
+    }
+
+    /**
+     * Returns the probability of a payout
+     *
+     * @param payout The payout
+     * @return The probability, 0 if the payout cannot occur
+     */
+    public BigDecimal getProbability(long payout) {
+        return ratio(weights.getOrDefault(payout, BigInteger.ZERO), totalWeight);
+    }
+
+    /**
+     * Returns the expected payout divided by the betting amount
+     *
+     * @return The return to player
+     */
+    public BigDecimal getReturnToPlayer() {
+        return ratio(weightedSum(1), totalWeight.multiply(BigInteger.valueOf(bettingAmount)));
+    }
+
+    /**
+     * Returns the probability of a round paying anything
+     *
+     * @return The hit frequency
+     */
+    public BigDecimal getHitFrequency() {
+        var hitWeight = weights.entrySet().stream()
+                .filter(entry -> entry.getKey() > 0)
+                .map(Map.Entry::getValue)
+                .reduce(BigInteger.ZERO, BigInteger::add);
+        return ratio(hitWeight, totalWeight);
+    }
+
+    /**
+     * Returns the variance of the payout
+     *
+     * @return The payout variance
+     */
+    public BigDecimal getPayoutVariance() {
+        // (T * sum(w x^2) - sum(w x)^2) / T^2
+        var sum = weightedSum(1);
+        var numerator = weightedSum(2).multiply(totalWeight).subtract(sum.multiply(sum));
+        return ratio(numerator, totalWeight.multiply(totalWeight));
+    }
+
+    /**
+     * Returns the standard deviation of the payout
+     *
+     * @return The payout standard deviation
+     */
+    public BigDecimal getPayoutStandardDeviation() {
+        return getPayoutVariance().sqrt(PRECISION);
+    }
+
+    private BigInteger weightedSum(int power) {
+        var sum = BigInteger.ZERO;
+        for (Map.Entry<Long, BigInteger> entry : weights.entrySet()) {
+            sum = sum.add(BigInteger.valueOf(entry.getKey()).pow(power).multiply(entry.getValue()));
+        }
+        return sum;
+    }
+
+    private static BigDecimal ratio(BigInteger numerator, BigInteger denominator) {
+        return new BigDecimal(numerator).divide(new BigDecimal(denominator), PRECISION);
+    }
+
+    public int getBettingAmount() {
+        return bettingAmount;
+    }
+
+    public SortedMap<Long, BigInteger> getWeights() {
+        return weights;
+    }
+
+    public BigInteger getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Formats the distribution as a JSON document
+     *
+     * @return The JSON report
+     */
+    public String toJson() {
+        var json = new StringBuilder("{\n");
+        json.append("\"betting_amount\": ").append(bettingAmount).append(",\n");
+        json.append("\"total_weight\": ").append(totalWeight).append(",\n");
+        json.append("\"rtp\": ").append(getReturnToPlayer().toPlainString()).append(",\n");
+        json.append("\"hit_frequency\": ").append(getHitFrequency().toPlainString()).append(",\n");
+        json.append("\"payout_variance\": ").append(getPayoutVariance().toPlainString()).append(",\n");
+        json.append("\"payout_standard_deviation\": ").append(getPayoutStandardDeviation().toPlainString())
+                .append(",\n");
+        json.append("\"distribution\": [");
+        var first = true;
+        for (Map.Entry<Long, BigInteger> entry : weights.entrySet()) {
+            json.append(first ? "\n" : ",\n").append("{\"payout\": ").append(entry.getKey())
+                    .append(", \"weight\": ").append(entry.getValue())
+                    .append(", \"probability\": ").append(ratio(entry.getValue(), totalWeight).toPlainString())
+                    .append('}');
+            first = false;
+        }
+        return json.append("\n]\n}").toString();
+    }
+}
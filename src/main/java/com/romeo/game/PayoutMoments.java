@@ -0,0 +1,44 @@
+package com.romeo.game;
+
+/**
+ * The summary figures of the payout of a single round, in double precision: enough to compare configurations
+ * without keeping every distinct payout like a {@link PayoutDistribution}
+ *
+ * @param bettingAmount  The betting amount
+ * @param returnToPlayer The expected payout divided by the betting amount
+ * @param hitFrequency   The probability of a round paying anything
+ * @param payoutVariance The variance of the payout
+ */
+public record PayoutMoments(int bettingAmount, double returnToPlayer, double hitFrequency, double payoutVariance) {
+
+    /**
+     * Takes the figures of a simulation
+     *
+     * @param statistics    The statistics of the simulated rounds
+     * @param bettingAmount The betting amount of every round
+     * @return The estimated moments
+     */
+    public static PayoutMoments of(SimulationStatistics statistics, int bettingAmount) {
+        return new PayoutMoments(bettingAmount, statistics.getReturnToPlayer(), statistics.getHitFrequency(),
+                statistics.getPayoutVariance());
+    }
+
+    /**
+     * Returns the standard deviation of the payout in betting amounts, the usual measure of a game's volatility
+     *
+     * @return The volatility
+     */
+    public double volatility() {
+        return Math.sqrt(payoutVariance) / bettingAmount;
+    }
+
+    /**
+     * Formats the figures as a JSON object
+     *
+     * @return The JSON report
+     */
+    public String toJson() {
+        return "{\"rtp\": " + returnToPlayer + ", \"hit_frequency\": " + hitFrequency + ", \"volatility\": "
+                + volatility() + "}";
+    }
+}
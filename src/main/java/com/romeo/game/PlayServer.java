@@ -0,0 +1,459 @@
+package com.romeo.game;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP service playing rounds against a configuration loaded once at startup.
+ * <p>
+ * Every request runs on its own virtual thread. {@code POST /play} takes a betting amount, either as a plain
+ * number or as {@code {"betting_amount": 100}}, and answers with the JSON document the command line game
+ * prints, serialized by the engine's {@link ResultWriter}. {@code POST /play/batch} takes a JSON array of betting
+ * amounts, or one amount per line, and answers with an array of results in the same order. A request body larger
+ * than {@value #MAX_BODY_SIZE} bytes is refused. Connections are kept alive between requests.
+ * <p>
+ * The engine is obtained once per request, so a server backed by a {@link ConfigWatcher} picks up a reloaded
+ * configuration on the next request while requests in flight finish on the configuration they started with.
+ * {@code GET /metrics} answers with the {@link GameMetrics} of an instrumented engine.
+ * <p>
+ * A server given a {@link RoundRandomSource} plays every round on its own seeded generator, returns the round id
+ * of {@code /play} in the {@code X-Round-Id} header and appends every round to the {@link RoundJournal}, if any,
+ * so it can be replayed later. A server given a {@link TicketPool} issues its pre-generated tickets on
+ * {@code POST /ticket}.
+ * <p>
+ * A server given a {@link GameRegistry} also plays any of the registry's games on
+ * {@code POST /games/{gameId}/play} and {@code POST /games/{gameId}/play/batch}, each request on a lease of the
+ * game's current version, and reports the registry on {@code GET /games}.
+ */
+public class PlayServer {
+
+    // The seconds in-flight exchanges get to complete when the server stops
+    private static final int SHUTDOWN_GRACE_SECONDS = 5;
+
+    // The largest number of rounds a single batch request may ask for
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    // The largest request body read, room for a batch of MAX_BATCH_SIZE amounts written as JSON objects
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    // The size of the buffer batch results are streamed through
+    private static final int RESPONSE_BUFFER_SIZE = 1 << 16;
+
+    private final Supplier<GameEngine> engine;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    // Null to play rounds on the request thread's generator
+    private final RoundRandomSource randomSource;
+
+    // Null when rounds are not journaled
+    private final RoundJournal journal;
+
+    // Null when no ticket pool is served
+    private final TicketPool ticketPool;
+
+    // Null when only the default game is served
+    private final GameRegistry registry;
+
+    public PlayServer(GameEngine engine, int port) throws IOException {
+        this(() -> engine, port);
+    }
+
+    public PlayServer(Supplier<GameEngine> engine, int port) throws IOException {
+        this(engine, port, null, null, null);
+    }
+
+    public PlayServer(Supplier<GameEngine> engine, int port, RoundRandomSource randomSource, RoundJournal journal,
+                      TicketPool ticketPool) throws IOException {
+        this(engine, port, randomSource, journal, ticketPool, null);
+    }
+
+    /**
+     * Creates a server
+     *
+     * @param engine       The engine of the default game played on {@code /play}, null to serve only the registry
+     * @param port         The port, 0 for any free port
+     * @param randomSource The source of seeded round generators, null to play on the request thread's generator
+     * @param journal      The journal of the seeded rounds, may be null
+     * @param ticketPool   The ticket pool issued on {@code /ticket}, may be null
+     * @param registry     The games played on {@code /games/{gameId}/play}, may be null
+     * @throws IOException If the server cannot listen on the port
+     */
+    public PlayServer(Supplier<GameEngine> engine, int port, RoundRandomSource randomSource, RoundJournal journal,
+                      TicketPool ticketPool, GameRegistry registry) throws IOException {
+        this.engine = engine;
+        this.randomSource = randomSource;
+        this.journal = journal;
+        this.ticketPool = ticketPool;
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/play", this::handlePlay);
+        server.createContext("/play/batch", this::handleBatch);
+        server.createContext("/metrics", this::handleMetrics);
+        server.createContext("/ticket", this::handleTicket);
+        server.createContext("/games", this::handleGames);
+    }
+
+    /**
+     * Starts accepting requests and registers a shutdown hook stopping the server gracefully
+     */
+    public void start() {
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "play-server-shutdown"));
+    }
+
+    /**
+     * Stops accepting connections, lets in-flight requests finish and releases the request threads
+     */
+    public void stop() {
+        server.stop(SHUTDOWN_GRACE_SECONDS);
+        executor.close();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Unable to close the round journal: " + e.getMessage());
+            }
+        }
+        if (ticketPool != null) {
+            try {
+                ticketPool.close();
+            } catch (IOException e) {
+                System.err.println("Unable to close the ticket pool: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handlePlay(HttpExchange exchange) throws IOException {
+        var body = readBody(exchange);
+        if (body == null) {
+            return;
+        }
+        if (!exchange.getRequestURI().getPath().equals("/play")) {
+            send(exchange, 404, "{\"error\": \"not found\"}");
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "{\"error\": \"use POST\"}");
+            return;
+        }
+        if (engine == null) {
+            send(exchange, 404, "{\"error\": \"no default game is served, use /games/{gameId}/play\"}");
+            return;
+        }
+        play(exchange, engine.get(), body);
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        var body = readBody(exchange);
+        if (body == null) {
+            return;
+        }
+        if (!exchange.getRequestURI().getPath().equals("/play/batch")) {
+            send(exchange, 404, "{\"error\": \"not found\"}");
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "{\"error\": \"use POST\"}");
+            return;
+        }
+        if (engine == null) {
+            send(exchange, 404, "{\"error\": \"no default game is served, use /games/{gameId}/play/batch\"}");
+            return;
+        }
+        playBatch(exchange, engine.get(), body);
+    }
+
+    /**
+     * Routes {@code /games/{gameId}/play} and {@code /games/{gameId}/play/batch} to a lease of the game
+     */
+    private void handleGames(HttpExchange exchange) throws IOException {
+        var body = readBody(exchange);
+        if (body == null) {
+            return;
+        }
+        if (registry == null) {
+            send(exchange, 404, "{\"error\": \"no game registry is served\"}");
+            return;
+        }
+        var path = exchange.getRequestURI().getPath().split("/");
+        if (path.length == 2) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, 405, "{\"error\": \"use GET\"}");
+                return;
+            }
+            send(exchange, 200, registry.toJson());
+            return;
+        }
+        var batch = path.length == 5 && path[4].equals("batch");
+        if ((path.length != 4 && !batch) || !path[3].equals("play")) {
+            send(exchange, 404, "{\"error\": \"not found\"}");
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "{\"error\": \"use POST\"}");
+            return;
+        }
+        var gameId = path[2];
+        if (!registry.exists(gameId)) {
+            send(exchange, 404, "{\"error\": \"unknown game: " + JSONObject.escape(gameId) + "\"}");
+            return;
+        }
+        GameRegistry.Lease lease;
+        try {
+            lease = registry.acquire(gameId);
+        } catch (ConfigurationException e) {
+            send(exchange, 500, "{\"error\": \"" + JSONObject.escape(e.getMessage()) + "\"}");
+            return;
+        }
+        try (lease) {
+            if (batch) {
+                playBatch(exchange, lease.getEngine(), body);
+            } else {
+                play(exchange, lease.getEngine(), body);
+            }
+        }
+    }
+
+    /**
+     * Plays the round of a {@code /play} request on an engine
+     */
+    private void play(HttpExchange exchange, GameEngine currentEngine, String body) throws IOException {
+        int bettingAmount;
+        try {
+            bettingAmount = parseBettingAmount(body);
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e));
+            return;
+        }
+        var context = currentEngine.newContext();
+        var roundId = playRound(currentEngine, bettingAmount, context);
+        var start = System.nanoTime();
+        var writer = currentEngine.getResultWriter();
+        var response = ByteBuffer.allocate(writer.getMaxJsonSize());
+        writer.writeJson(context, response);
+        recordSerialization(currentEngine, start);
+        if (roundId >= 0) {
+            exchange.getResponseHeaders().set("X-Round-Id", Long.toString(roundId));
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.position());
+        try (var channel = Channels.newChannel(exchange.getResponseBody())) {
+            ResultWriter.drain(response, channel);
+        }
+    }
+
+    /**
+     * Plays the rounds of a {@code /play/batch} request on an engine, streaming the results as they are played
+     */
+    private void playBatch(HttpExchange exchange, GameEngine currentEngine, String body) throws IOException {
+        List<Integer> bettingAmounts;
+        try {
+            bettingAmounts = parseBettingAmounts(body);
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e));
+            return;
+        }
+        var writer = currentEngine.getResultWriter();
+        var context = currentEngine.newContext();
+        var response = ByteBuffer.allocate(Math.max(RESPONSE_BUFFER_SIZE, writer.getMaxJsonSize() + 2));
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, 0);
+        try (var channel = Channels.newChannel(exchange.getResponseBody())) {
+            response.put((byte) '[');
+            for (int i = 0; i < bettingAmounts.size(); i++) {
+                playRound(currentEngine, bettingAmounts.get(i), context);
+                if (response.remaining() < writer.getMaxJsonSize() + 2) {
+                    ResultWriter.drain(response, channel);
+                }
+                var start = System.nanoTime();
+                if (i > 0) {
+                    response.put((byte) ',');
+                }
+                response.put((byte) '\n');
+                writer.writeJson(context, response);
+                recordSerialization(currentEngine, start);
+            }
+            response.put((byte) '\n').put((byte) ']');
+            ResultWriter.drain(response, channel);
+        }
+    }
+
+    /**
+     * Plays a round, seeded and journaled if the server has a random source
+     *
+     * @return The round id, -1 without a random source
+     */
+    private long playRound(GameEngine engine, int bettingAmount, RoundContext context) throws IOException {
+        if (randomSource == null) {
+            engine.play(bettingAmount, ThreadLocalRandom.current(), context);
+            return -1;
+        }
+        var roundId = randomSource.nextRoundId();
+        var seed = randomSource.seedOf(roundId);
+        var payout = engine.play(bettingAmount, randomSource.create(seed), context);
+        if (journal != null) {
+            journal.append(roundId, seed, engine.getConfig(), bettingAmount, payout);
+        }
+        return roundId;
+    }
+
+    private void handleTicket(HttpExchange exchange) throws IOException {
+        if (readBody(exchange) == null) {
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "{\"error\": \"use POST\"}");
+            return;
+        }
+        if (ticketPool == null) {
+            send(exchange, 404, "{\"error\": \"no ticket pool is served\"}");
+            return;
+        }
+        var ticket = ticketPool.issue();
+        if (ticket < 0) {
+            send(exchange, 410, "{\"error\": \"the ticket pool is sold out\"}");
+            return;
+        }
+        send(exchange, 200, ticketPool.toJson(ticket));
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (readBody(exchange) == null) {
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("GET")) {
+            send(exchange, 405, "{\"error\": \"use GET\"}");
+            return;
+        }
+        var metrics = engine != null ? engine.get().getMetrics() : registry != null ? registry.getMetrics() : null;
+        if (metrics == null) {
+            send(exchange, 404, "{\"error\": \"metrics are not enabled\"}");
+            return;
+        }
+        send(exchange, 200, metrics.toJson());
+    }
+
+    private static void recordSerialization(GameEngine engine, long start) {
+        var metrics = engine.getMetrics();
+        if (metrics != null) {
+            metrics.recordLatency(GameMetrics.Phase.SERIALIZATION, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Parses a single betting amount from a plain number or a JSON object
+     */
+    static int parseBettingAmount(String body) {
+        var text = body.trim();
+        if (text.startsWith("{")) {
+            try {
+                var request = (JSONObject) new JSONParser().parse(text);
+                return toBettingAmount(request.get("betting_amount"));
+            } catch (ParseException | ClassCastException e) {
+                throw new IllegalArgumentException("Invalid request: " + text);
+            }
+        }
+        try {
+            return toBettingAmount(Long.parseLong(text));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid betting amount: " + text);
+        }
+    }
+
+    /**
+     * Parses the betting amounts of a batch from a JSON array or from one amount per line
+     */
+    static List<Integer> parseBettingAmounts(String body) {
+        var text = body.trim();
+        List<Integer> bettingAmounts = new ArrayList<>();
+        if (text.startsWith("[")) {
+            try {
+                for (Object value : (JSONArray) new JSONParser().parse(text)) {
+                    bettingAmounts.add(value instanceof JSONObject request
+                            ? toBettingAmount(request.get("betting_amount"))
+                            : toBettingAmount(value));
+                }
+            } catch (ParseException e) {
+                throw new IllegalArgumentException("Invalid request: " + text);
+            }
+        } else {
+            for (String line : text.split("\\R")) {
+                if (!line.isBlank()) {
+                    bettingAmounts.add(parseBettingAmount(line));
+                }
+            }
+        }
+        if (bettingAmounts.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch may contain at most " + MAX_BATCH_SIZE + " rounds");
+        }
+        return bettingAmounts;
+    }
+
+    /**
+     * Validates a betting amount parsed from a request
+     *
+     * @param value The parsed value
+     * @return The betting amount
+     */
+    static int toBettingAmount(Object value) {
+        if (!(value instanceof Long amount) || amount <= 0 || amount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid betting amount: " + value);
+        }
+        return amount.intValue();
+    }
+
+    /**
+     * Reads a request body of at most {@value #MAX_BODY_SIZE} bytes, without buffering more of a larger one
+     *
+     * @return The body, null if it was too large and the request has been answered
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        byte[] bytes;
+        try (var body = exchange.getRequestBody()) {
+            bytes = body.readNBytes(MAX_BODY_SIZE + 1);
+        }
+        if (bytes.length > MAX_BODY_SIZE) {
+            send(exchange, 413, "{\"error\": \"the request body is larger than " + MAX_BODY_SIZE + " bytes\"}");
+            return null;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String error(IllegalArgumentException e) {
+        return "{\"error\": \"" + JSONObject.escape(e.getMessage()) + "\"}";
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+}
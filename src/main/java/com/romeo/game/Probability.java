@@ -22,4 +22,12 @@ public class Probability {
         this.row = row;
         this.symbolProbabilities = symbolProbabilities;
     }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getRow() {
+        return row;
+    }
 }
@@ -0,0 +1,262 @@
+package com.romeo.game;
+
+import org.json.simple.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes the round left in a {@link RoundContext} straight into a byte buffer, without materializing a
+ * {@link RoundResult} or any intermediate string.
+ * <p>
+ * The quoted UTF-8 bytes of every symbol name and combination key are encoded once when the writer is created,
+ * so writing a round only copies precomputed fragments and the digits of the reward. The JSON form is a single
+ * line:
+ * <pre>
+ * {"matrix": [["A", "B"], ["C", "D"]], "reward": 100, "applied_winning_combinations": {"A": ["same_symbol_3_times"]},
+ * "applied_bonus_symbol": ["10x"]}
+ * </pre>
+ * The binary form, for consumers that know the configuration, is the big-endian reward, one symbol id byte per
+ * cell in row order, the number of symbols appearing at least {@value WinCombinationEvaluator#MIN_SYMBOL_COUNT}
+ * times as a short, and for each of them the symbol id byte and the long bitset of its applied combination ids.
+ * <p>
+ * A writer is immutable and can be shared by all threads playing the configuration.
+ */
+public class ResultWriter {
+
+    private static final byte[] MATRIX = ascii("\"matrix\": [");
+    private static final byte[] REWARD = ascii("], \"reward\": ");
+    private static final byte[] APPLIED_WINNING_COMBINATIONS = ascii(", \"applied_winning_combinations\": {");
+    private static final byte[] APPLIED_BONUS_SYMBOL = ascii("}, \"applied_bonus_symbol\": [");
+    private static final byte[] SEPARATOR = ascii(", ");
+    private static final byte[] KEY_SEPARATOR = ascii(": [");
+
+    // The longest decimal int, -2147483648
+    private static final int MAX_INT_DIGITS = 11;
+
+    private final GameConfig config;
+
+    private final SymbolTable symbolTable;
+
+    private final WinCombinationEvaluator evaluator;
+
+    // Indexed by symbol id, the quoted and escaped name
+    private final byte[][] symbolNames;
+
+    // Indexed by combination id, the quoted and escaped key
+    private final byte[][] combinationKeys;
+
+    private final int maxJsonSize;
+
+    private final int maxBinarySize;
+
+    public ResultWriter(GameConfig config) {
+        this.config = config;
+        this.symbolTable = config.getSymbolTable();
+        this.evaluator = config.getWinCombinationEvaluator();
+        this.symbolNames = new byte[symbolTable.size()][];
+        var longestName = 0;
+        for (int id = 0; id < symbolNames.length; id++) {
+            symbolNames[id] = quote(symbolTable.getName(id));
+            longestName = Math.max(longestName, symbolNames[id].length);
+        }
+        this.combinationKeys = new byte[evaluator.getCombinationCount()][];
+        var allKeys = 0;
+        for (int id = 0; id < combinationKeys.length; id++) {
+            combinationKeys[id] = quote(evaluator.getCombinationKey(id));
+            allKeys += combinationKeys[id].length + SEPARATOR.length;
+        }
+        var cells = config.getRows() * config.getColumns();
+        // Every cell as a matrix entry and as a bonus symbol, every symbol with all combinations applied
+        this.maxJsonSize = 2 + MATRIX.length + REWARD.length + APPLIED_WINNING_COMBINATIONS.length
+                + APPLIED_BONUS_SYMBOL.length + MAX_INT_DIGITS
+                + config.getRows() * (2 + SEPARATOR.length) + 2 * cells * (longestName + SEPARATOR.length)
+                + symbolNames.length * (longestName + KEY_SEPARATOR.length + 1 + SEPARATOR.length + allKeys);
+        this.maxBinarySize = Integer.BYTES + cells + Short.BYTES + symbolNames.length * (1 + Long.BYTES);
+    }
+
+    /**
+     * Returns the largest number of bytes {@link #writeJson(RoundContext, ByteBuffer)} writes for a round
+     */
+    public int getMaxJsonSize() {
+        return maxJsonSize;
+    }
+
+    /**
+     * Returns the largest number of bytes {@link #writeBinary(RoundContext, ByteBuffer)} writes for a round
+     */
+    public int getMaxBinarySize() {
+        return maxBinarySize;
+    }
+
+    /**
+     * Writes the last round of a context as a JSON object
+     *
+     * @param context The context of a round played on this writer's configuration
+     * @param buffer  The buffer, with at least {@link #getMaxJsonSize()} bytes remaining
+     */
+    public void writeJson(RoundContext context, ByteBuffer buffer) {
+        buffer.put((byte) '{');
+        writeJsonFields(context, buffer);
+        buffer.put((byte) '}');
+    }
+
+    /**
+     * Writes the fields of the JSON object of {@link #writeJson(RoundContext, ByteBuffer)}, without the braces,
+     * for callers adding fields of their own
+     */
+    void writeJsonFields(RoundContext context, ByteBuffer buffer) {
+        var columns = config.getColumns();
+        buffer.put(MATRIX);
+        for (int cell = 0; cell < context.matrix.length; cell++) {
+            if (cell % columns == 0) {
+                if (cell > 0) {
+                    buffer.put((byte) ']').put(SEPARATOR);
+                }
+                buffer.put((byte) '[');
+            } else {
+                buffer.put(SEPARATOR);
+            }
+            buffer.put(symbolNames[context.matrix[cell] & 0xFF]);
+        }
+        buffer.put((byte) ']');
+        buffer.put(REWARD);
+        writeDecimal(buffer, context.reward);
+
+        buffer.put(APPLIED_WINNING_COMBINATIONS);
+        var first = true;
+        for (int id = 0; id < context.counts.length; id++) {
+            if (context.counts[id] < WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                continue;
+            }
+            if (!first) {
+                buffer.put(SEPARATOR);
+            }
+            first = false;
+            buffer.put(symbolNames[id]).put(KEY_SEPARATOR);
+            var applied = context.appliedCombinations[id];
+            while (applied != 0) {
+                buffer.put(combinationKeys[Long.numberOfTrailingZeros(applied)]);
+                applied &= applied - 1;
+                if (applied != 0) {
+                    buffer.put(SEPARATOR);
+                }
+            }
+            buffer.put((byte) ']');
+        }
+
+        buffer.put(APPLIED_BONUS_SYMBOL);
+        first = true;
+        for (byte cell : context.matrix) {
+            var id = cell & 0xFF;
+            if (symbolTable.isAppliedBonus(id)) {
+                if (!first) {
+                    buffer.put(SEPARATOR);
+                }
+                first = false;
+                buffer.put(symbolNames[id]);
+            }
+        }
+        buffer.put((byte) ']');
+    }
+
+    /**
+     * Writes the last round of a context in the binary form
+     *
+     * @param context The context of a round played on this writer's configuration
+     * @param buffer  The buffer, with at least {@link #getMaxBinarySize()} bytes remaining
+     */
+    public void writeBinary(RoundContext context, ByteBuffer buffer) {
+        buffer.putInt(context.reward);
+        buffer.put(context.matrix);
+        var countPosition = buffer.position();
+        buffer.putShort((short) 0);
+        short winning = 0;
+        for (int id = 0; id < context.counts.length; id++) {
+            if (context.counts[id] >= WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                buffer.put((byte) id).putLong(context.appliedCombinations[id]);
+                winning++;
+            }
+        }
+        buffer.putShort(countPosition, winning);
+    }
+
+    /**
+     * Reads a round written by {@link #writeBinary(RoundContext, ByteBuffer)} on the same configuration
+     *
+     * @param buffer The buffer, positioned at the round
+     * @return The round result
+     */
+    public RoundResult readBinary(ByteBuffer buffer) {
+        var reward = buffer.getInt();
+        List<List<String>> matrix = new ArrayList<>(config.getRows());
+        List<String> appliedBonusSymbols = new ArrayList<>();
+        for (int row = 0; row < config.getRows(); row++) {
+            List<String> symbolRow = new ArrayList<>(config.getColumns());
+            for (int column = 0; column < config.getColumns(); column++) {
+                var id = buffer.get() & 0xFF;
+                symbolRow.add(symbolTable.getName(id));
+                if (symbolTable.isAppliedBonus(id)) {
+                    appliedBonusSymbols.add(symbolTable.getName(id));
+                }
+            }
+            matrix.add(symbolRow);
+        }
+        Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
+        for (int i = buffer.getShort(); i > 0; i--) {
+            var id = buffer.get() & 0xFF;
+            appliedWinningCombinations.put(symbolTable.getName(id), evaluator.toCombinationKeys(buffer.getLong()));
+        }
+        return new RoundResult(matrix, reward, appliedWinningCombinations, appliedBonusSymbols);
+    }
+
+    /**
+     * Writes everything put into a buffer to a channel and clears the buffer for the next rounds
+     *
+     * @param buffer  The buffer, in write mode
+     * @param channel The channel
+     * @throws IOException If the channel cannot be written
+     */
+    public static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the decimal digits of a number without allocating
+     */
+    static void writeDecimal(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                buffer.put(ascii("9223372036854775808"));
+                return;
+            }
+            value = -value;
+        }
+        var divisor = 1L;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static byte[] quote(String value) {
+        return ("\"" + JSONObject.escape(value) + "\"").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
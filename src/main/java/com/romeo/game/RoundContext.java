@@ -0,0 +1,130 @@
+package com.romeo.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reusable working memory for playing rounds without allocating. A context belongs to one thread and keeps
+ * the state of the last round played with it: the matrix as interned symbol ids, the per symbol counts and
+ * occupancy boards, and the applied combinations as bitsets over the compiled combination ids.
+ * Symbol names are only materialized by {@link #toRoundResult()}.
+ */
+public class RoundContext {
+
+    private final GameConfig config;
+
+    // Symbol ids in row order, read with & 0xFF
+    final byte[] matrix;
+
+    final int[] counts;
+
+    // Indexed by symbol id times the board words, see WinCombinationEvaluator#getBoardWords
+    final long[] occupancy;
+
+    // Working memory of the win combination evaluation
+    final long[] scratch;
+
+    final long[] appliedCombinations;
+
+    int reward;
+
+    public RoundContext(GameConfig config) {
+        this.config = config;
+        var symbols = config.getSymbolTable().size();
+        this.matrix = new byte[config.getRows() * config.getColumns()];
+        this.counts = new int[symbols];
+        var evaluator = config.getWinCombinationEvaluator();
+        this.occupancy = new long[symbols * evaluator.getBoardWords()];
+        this.scratch = new long[evaluator.getScratchSize()];
+        this.appliedCombinations = new long[symbols];
+    }
+
+    /**
+     * Clears the per symbol state of the previous round
+     */
+    void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(occupancy, 0L);
+        Arrays.fill(appliedCombinations, 0L);
+        reward = 0;
+    }
+
+    public GameConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the symbol id in a cell of the last round
+     *
+     * @param cell The cell, row * columns + column
+     * @return The symbol id
+     */
+    public int getSymbolId(int cell) {
+        return matrix[cell] & 0xFF;
+    }
+
+    public int getCellCount() {
+        return matrix.length;
+    }
+
+    /**
+     * Returns how often a symbol appeared in the last round
+     *
+     * @param symbolId The symbol id
+     * @return The symbol count
+     */
+    public int getCount(int symbolId) {
+        return counts[symbolId];
+    }
+
+    /**
+     * Returns the combinations applied to a symbol in the last round
+     *
+     * @param symbolId The symbol id
+     * @return The bitset of applied combination ids
+     */
+    public long getAppliedCombinations(int symbolId) {
+        return appliedCombinations[symbolId];
+    }
+
+    public int getReward() {
+        return reward;
+    }
+
+    /**
+     * Materializes the last round with symbol names
+     *
+     * @return The round result
+     */
+    public RoundResult toRoundResult() {
+        var symbolTable = config.getSymbolTable();
+        var evaluator = config.getWinCombinationEvaluator();
+        var columns = config.getColumns();
+
+        List<List<String>> rows = new ArrayList<>(config.getRows());
+        List<String> appliedBonusSymbols = new ArrayList<>();
+        for (int row = 0; row < config.getRows(); row++) {
+            List<String> symbolRow = new ArrayList<>(columns);
+            for (int column = 0; column < columns; column++) {
+                var id = getSymbolId(row * columns + column);
+                symbolRow.add(symbolTable.getName(id));
+                if (symbolTable.isAppliedBonus(id)) {
+                    appliedBonusSymbols.add(symbolTable.getName(id));
+                }
+            }
+            rows.add(symbolRow);
+        }
+
+        Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] >= WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                appliedWinningCombinations.put(symbolTable.getName(id),
+                        evaluator.toCombinationKeys(appliedCombinations[id]));
+            }
+        }
+        return new RoundResult(rows, reward, appliedWinningCombinations, appliedBonusSymbols);
+    }
+}
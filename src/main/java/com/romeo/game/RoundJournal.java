@@ -0,0 +1,314 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only binary journal of played rounds, written through a memory-mapped file.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte header holding the record count, the largest journaled round
+ * id and the name of the random generator algorithm, followed by {@value #RECORD_SIZE} byte records of round id,
+ * round seed, the first 64 bits of the configuration's content hash, betting amount and payout. Together with the
+ * configuration this is enough to replay any round bit for bit. The file is mapped in regions of
+ * {@value #REGION_RECORDS} records and forced to disk every {@value #FLUSH_RECORDS} records and on
+ * {@link #close()}.
+ * <p>
+ * A journal opened for appending owns its file. A journal opened for reading maps the file read-only and never
+ * changes it, so a journal can be replayed while a server is still appending to it.
+ */
+public class RoundJournal implements AutoCloseable {
+
+    public static final int HEADER_SIZE = 64;
+
+    public static final int RECORD_SIZE = 32;
+
+    // "SRJN", the first bytes of every journal
+    private static final int MAGIC = 0x53524A4E;
+
+    // Version 1 journals have no largest round id in their header
+    private static final int VERSION = 2;
+
+    private static final int COUNT_OFFSET = 16;
+
+    private static final int LAST_ROUND_ID_OFFSET = 24;
+
+    private static final int ALGORITHM_OFFSET = 32;
+
+    private static final int MAX_ALGORITHM_LENGTH = HEADER_SIZE - ALGORITHM_OFFSET - 1;
+
+    private static final int REGION_RECORDS = 1 << 20;
+
+    private static final int FLUSH_RECORDS = 4096;
+
+    /**
+     * A journaled round
+     *
+     * @param roundId       The round id
+     * @param seed          The seed of the round's random generator
+     * @param configHash    The first 64 bits of the configuration's content hash, 0 if it has none
+     * @param bettingAmount The betting amount
+     * @param payout        The reward paid
+     */
+    public record Entry(long roundId, long seed, long configHash, int bettingAmount, int payout) {
+    }
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    private final String algorithm;
+
+    private final boolean writable;
+
+    // Not a monitor, so virtual threads appending rounds do not pin their carrier while the journal is forced
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private MappedByteBuffer region;
+
+    private long regionStart;
+
+    private long count;
+
+    private long lastRoundId;
+
+    private long unflushed;
+
+    private RoundJournal(FileChannel channel, MappedByteBuffer header, String algorithm, boolean writable)
+            throws IOException {
+        this.channel = channel;
+        this.header = header;
+        this.algorithm = algorithm;
+        this.writable = writable;
+        this.count = header.getLong(COUNT_OFFSET);
+        if (header.getInt(4) == VERSION) {
+            this.lastRoundId = header.getLong(LAST_ROUND_ID_OFFSET);
+        } else {
+            // A version 1 journal is scanned once, and upgraded when it is opened for appending
+            this.lastRoundId = -1;
+            for (long i = 0; i < count; i++) {
+                lastRoundId = Math.max(lastRoundId, read(i).roundId());
+            }
+            if (writable) {
+                header.putLong(LAST_ROUND_ID_OFFSET, lastRoundId).putInt(4, VERSION);
+                header.force();
+            }
+        }
+    }
+
+    /**
+     * Opens a journal for appending, creating it if it does not exist
+     *
+     * @param file      The journal file
+     * @param algorithm The random generator algorithm of the journaled rounds
+     * @return The journal
+     * @throws IOException If the file cannot be opened or was written with another algorithm
+     */
+    public static RoundJournal open(Path file, String algorithm) throws IOException {
+        var bytes = algorithm.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > MAX_ALGORITHM_LENGTH) {
+            throw new IllegalArgumentException("Algorithm name too long: " + algorithm);
+        }
+        var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            var existing = channel.size() >= HEADER_SIZE;
+            var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (!existing) {
+                header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putLong(COUNT_OFFSET, 0)
+                        .putLong(LAST_ROUND_ID_OFFSET, -1);
+                header.put(ALGORITHM_OFFSET, (byte) bytes.length).put(ALGORITHM_OFFSET + 1, bytes);
+                header.force();
+            }
+            var journal = new RoundJournal(channel, header, readHeader(header, file), true);
+            if (!journal.algorithm.equals(algorithm)) {
+                throw new IOException(file + " journals rounds of " + journal.algorithm + ", not " + algorithm);
+            }
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing journal read-only for reading the entries journaled so far
+     *
+     * @param file The journal file
+     * @return The journal
+     * @throws IOException If the file cannot be opened or is not a journal
+     */
+    public static RoundJournal open(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            throw new IOException("No journal at " + file);
+        }
+        var channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is not a round journal");
+            }
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            return new RoundJournal(channel, header, readHeader(header, file), false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static String readHeader(MappedByteBuffer header, Path file) throws IOException {
+        var version = header.getInt(4);
+        if (header.getInt(0) != MAGIC || (version != 1 && version != VERSION) || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException(file + " is not a round journal");
+        }
+        var bytes = new byte[header.get(ALGORITHM_OFFSET)];
+        header.get(ALGORITHM_OFFSET + 1, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Appends a round
+     *
+     * @param roundId       The round id
+     * @param seed          The seed of the round's random generator
+     * @param config        The configuration the round was played on
+     * @param bettingAmount The betting amount
+     * @param payout        The reward paid
+     * @throws IOException If the journal cannot grow
+     */
+    public void append(long roundId, long seed, GameConfig config, int bettingAmount, int payout)
+            throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("The journal is open for reading");
+        }
+        lock.lock();
+        try {
+            var position = HEADER_SIZE + count * RECORD_SIZE;
+            if (region == null || position >= regionStart + (long) REGION_RECORDS * RECORD_SIZE) {
+                mapRegion(position);
+            }
+            var offset = (int) (position - regionStart);
+            region.putLong(offset, roundId)
+                    .putLong(offset + 8, seed)
+                    .putLong(offset + 16, config.getHashPrefix())
+                    .putInt(offset + 24, bettingAmount)
+                    .putInt(offset + 28, payout);
+            count++;
+            lastRoundId = Math.max(lastRoundId, roundId);
+            header.putLong(COUNT_OFFSET, count).putLong(LAST_ROUND_ID_OFFSET, lastRoundId);
+            if (++unflushed >= FLUSH_RECORDS) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads a journaled round
+     *
+     * @param index The index of the entry, between 0 and {@link #size()}
+     * @return The entry
+     * @throws IOException If the entry cannot be read
+     */
+    public Entry read(long index) throws IOException {
+        lock.lock();
+        try {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException("No journal entry " + index);
+            }
+            var position = HEADER_SIZE + index * RECORD_SIZE;
+            if (region == null || position < regionStart
+                    || position >= regionStart + (long) REGION_RECORDS * RECORD_SIZE) {
+                mapRegion(position);
+            }
+            var offset = (int) (position - regionStart);
+            return new Entry(region.getLong(offset), region.getLong(offset + 8), region.getLong(offset + 16),
+                    region.getInt(offset + 24), region.getInt(offset + 28));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the appended entries and the record count to disk
+     */
+    public void flush() {
+        if (!writable) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (region != null) {
+                region.force();
+            }
+            header.force();
+            unflushed = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the largest journaled round id, so a restarted process can continue after it
+     *
+     * @return The largest round id, -1 for an empty journal
+     */
+    public long getLastRoundId() {
+        lock.lock();
+        try {
+            return lastRoundId;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Flushes a journal open for appending and cuts the unused tail of the last mapped region off the file. A
+     * journal open for reading leaves the file as it is.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (writable) {
+                flush();
+                region = null;
+                channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+            }
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void mapRegion(long position) throws IOException {
+        if (region != null && writable) {
+            region.force();
+        }
+        regionStart = HEADER_SIZE + (position - HEADER_SIZE) / ((long) REGION_RECORDS * RECORD_SIZE)
+                * REGION_RECORDS * RECORD_SIZE;
+        var size = (long) REGION_RECORDS * RECORD_SIZE;
+        // A read-only mapping may not extend the file, so it stops at the records journaled when it was opened
+        region = writable ? channel.map(FileChannel.MapMode.READ_WRITE, regionStart, size)
+                : channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                Math.min(size, HEADER_SIZE + count * RECORD_SIZE - regionStart));
+    }
+}
@@ -0,0 +1,86 @@
+package com.romeo.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Hands out reproducible random number generators, one per round.
+ * <p>
+ * Every round gets an id counting up from 0 and a seed derived from the master seed and the round id with the
+ * SplitMix64 finalizer, so the seeds of neighbouring rounds are unrelated and any round can be recreated from its
+ * seed alone. The generator algorithm is any {@link RandomGeneratorFactory} name, {@value #DEFAULT_ALGORITHM} by
+ * default. Generators are created per round and never shared, so threads do not contend on them.
+ */
+public class RoundRandomSource {
+
+    public static final String DEFAULT_ALGORITHM = "L64X128MixRandom";
+
+    // The golden ratio increment of SplitMix64
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final RandomGeneratorFactory<RandomGenerator> factory;
+
+    private final String algorithm;
+
+    private final long masterSeed;
+
+    private final AtomicLong nextRoundId;
+
+    public RoundRandomSource(String algorithm, long masterSeed) {
+        this(algorithm, masterSeed, 0);
+    }
+
+    public RoundRandomSource(String algorithm, long masterSeed, long firstRoundId) {
+        this.factory = RandomGeneratorFactory.of(algorithm);
+        this.algorithm = algorithm;
+        this.masterSeed = masterSeed;
+        this.nextRoundId = new AtomicLong(firstRoundId);
+    }
+
+    /**
+     * Reserves the id of the next round
+     *
+     * @return The round id
+     */
+    public long nextRoundId() {
+        return nextRoundId.getAndIncrement();
+    }
+
+    /**
+     * Derives the seed of a round
+     *
+     * @param roundId The round id
+     * @return The seed of the round
+     */
+    public long seedOf(long roundId) {
+        return mix(masterSeed + (roundId + 1) * GOLDEN_GAMMA);
+    }
+
+    /**
+     * Creates the generator of a round seed
+     *
+     * @param seed The round seed
+     * @return A new generator
+     */
+    public RandomGenerator create(long seed) {
+        return factory.create(seed);
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    /**
+     * The SplitMix64 finalizer
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,49 @@
+package com.romeo.game;
+
+import org.json.simple.JSONObject;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of a single round played by the {@link GameEngine}
+ *
+ * @param matrix                     The generated game matrix
+ * @param reward                     The final reward including bonus symbols
+ * @param appliedWinningCombinations The applied winning combinations for each symbol
+ * @param appliedBonusSymbols        The bonus symbols found in the matrix
+ */
+public record RoundResult(List<List<String>> matrix, int reward, Map<String, List<String>> appliedWinningCombinations,
+                          List<String> appliedBonusSymbols) {
+
+    /**
+     * Formats the result in the shape printed by the command line game
+     *
+     * @return The formatted result
+     */
+    public String toJson() {
+        var json = new StringBuilder(256).append("{\"matrix\": [");
+        for (int row = 0; row < matrix.size(); row++) {
+            json.append(row == 0 ? "" : ", ");
+            appendStrings(json, matrix.get(row));
+        }
+        json.append("], \"reward\": ").append(reward).append(", \"applied_winning_combinations\": {");
+        var first = true;
+        for (Map.Entry<String, List<String>> entry : appliedWinningCombinations.entrySet()) {
+            json.append(first ? "\"" : ", \"").append(JSONObject.escape(entry.getKey())).append("\": ");
+            appendStrings(json, entry.getValue());
+            first = false;
+        }
+        json.append("}, \"applied_bonus_symbol\": ");
+        appendStrings(json, appliedBonusSymbols);
+        return json.append('}').toString();
+    }
+
+    private static void appendStrings(StringBuilder json, List<String> values) {
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            json.append(i == 0 ? "\"" : ", \"").append(JSONObject.escape(values.get(i))).append('"');
+        }
+        json.append(']');
+    }
+}
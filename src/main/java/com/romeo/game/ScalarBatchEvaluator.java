@@ -0,0 +1,55 @@
+package com.romeo.game;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates a batch one lane at a time, building each round's occupancy boards from the batch's cell arrays. An
+ * evaluator belongs to the batch it was created for, so it keeps its working memory between batches.
+ */
+class ScalarBatchEvaluator implements BatchEvaluator {
+
+    private final WinCombinationEvaluator evaluator;
+
+    private final SymbolTable symbolTable;
+
+    // Indexed by symbol id times the board words, the occupancy boards of the current lane
+    private final long[] occupancy;
+
+    // Indexed by symbol id, the symbol counts of the current lane
+    private final int[] counts;
+
+    private final long[] scratch;
+
+    ScalarBatchEvaluator(GameConfig config) {
+        this.evaluator = config.getWinCombinationEvaluator();
+        this.symbolTable = config.getSymbolTable();
+        this.occupancy = new long[symbolTable.size() * evaluator.getBoardWords()];
+        this.counts = new int[symbolTable.size()];
+        this.scratch = new long[evaluator.getScratchSize()];
+    }
+
+    @Override
+    public void evaluate(MatrixBatch batch) {
+        var words = evaluator.getBoardWords();
+        for (int lane = 0; lane < batch.getSize(); lane++) {
+            for (int cell = 0; cell < batch.cells.length; cell++) {
+                var id = batch.cells[cell][lane] & 0xFF;
+                evaluator.mark(occupancy, id * words, cell);
+                counts[id]++;
+            }
+            for (int id = 0; id < counts.length; id++) {
+                if (counts[id] != 0) {
+                    batch.appliedCombinations[id][lane] = evaluator.evaluate(occupancy, id * words, counts[id],
+                            symbolTable.isMiss(id), scratch);
+                    Arrays.fill(occupancy, id * words, (id + 1) * words, 0L);
+                    counts[id] = 0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+}
@@ -1,31 +1,485 @@
 package com.romeo.game;
 
 
+import javax.management.JMException;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
 public class ScratchGame {
+
+    // The system property setting the seconds between two metrics dumps of the served game, 0 to disable them
+    private static final String METRICS_DUMP_PROPERTY = "scratch.metrics.dump";
+
+    // The system property naming the journal file of the served rounds
+    private static final String JOURNAL_PROPERTY = "scratch.journal";
+
+    // The system property setting the master seed of the served rounds
+    private static final String SEED_PROPERTY = "scratch.seed";
+
+    // The system property naming the random generator algorithm of the served and the seeded batch rounds
+    private static final String RNG_PROPERTY = "scratch.rng";
+
+    // The system property naming the ticket pool file served on /ticket
+    private static final String POOL_PROPERTY = "scratch.pool";
+
+    // The system property bounding the number of games a registry keeps loaded
+    private static final String REGISTRY_CAPACITY_PROPERTY = "scratch.registry.capacity";
+
+    private static final int DEFAULT_REGISTRY_CAPACITY = 32;
+
+    // The system property switching the batch mode to binary results
+    private static final String BATCH_BINARY_PROPERTY = "scratch.batch.binary";
+
+    // The system property bounding the number of candidate configurations the optimizer evaluates
+    private static final String OPTIMIZE_EVALUATIONS_PROPERTY = "scratch.optimize.evaluations";
+
+    private static final int DEFAULT_OPTIMIZE_EVALUATIONS = 2000;
+
+    // The system property setting the rounds simulated per candidate too large for the exact calculation
+    private static final String OPTIMIZE_ROUNDS_PROPERTY = "scratch.optimize.rounds";
+
+    private static final long DEFAULT_OPTIMIZE_ROUNDS = 1_000_000;
+
+    // The system property setting the seed shared by the simulations of all candidates
+    private static final String OPTIMIZE_SEED_PROPERTY = "scratch.optimize.seed";
+
     public static void main(String[] args) {
 
+        if (args.length > 0 && args[0].equals("simulate")) {
+            simulate(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("exact")) {
+            exact(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("batch")) {
+            batch(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("replay")) {
+            replay(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("pool")) {
+            pool(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("optimize")) {
+            optimize(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("shard")) {
+            shard(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("shards")) {
+            shards(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("merge")) {
+            merge(args);
+            return;
+        }
+
         if (args.length != 2) {
             System.out.println(
                     "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies config.json 100");
+            System.out.println(
+                    "or to simulate many rounds : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies simulate config.json 100 1000000 [seed]");
+            System.out.println(
+                    "or for the exact payout distribution : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies exact config.json 100");
+            System.out.println(
+                    "or to serve rounds over HTTP : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies serve config.json|games/ [8080]");
+            System.out.println(
+                    "or to play a stream of bets : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies batch config.json [bets.txt]");
+            System.out.println(
+                    "or to replay journaled rounds : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies replay config.json rounds.journal [roundId]");
+            System.out.println(
+                    "or to build a ticket pool : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies pool config.json 100 1000000 tickets.pool [seed]");
+            System.out.println(
+                    "or to tune the weights : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies optimize config.json 100 optimized.json rtp=0.94:0.96 [hit_frequency=0.3:0.4] [volatility=5:10]");
+            System.out.println(
+                    "or to simulate in local processes : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies shards config.json 100 100000000000 seed 8 shards/");
+            System.out.println(
+                    "or to simulate one shard : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies shard config.json 100 100000000000 seed 0 8 shard-0.bin");
+            System.out.println(
+                    "or to merge shards : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies merge config.json shard-0.bin shard-1.bin ...");
             return;
         }
 
         var configFile = args[0];
         var bettingAmount = Integer.parseInt(args[1]);
 
-        LoadConfigurationFile.loadConfig(configFile);
+        var engine = new GameEngine(LoadConfigurationFile.loadConfig(configFile));
+        var context = engine.newContext();
+
+        engine.play(bettingAmount, ThreadLocalRandom.current(), context);
+
+        printRound(engine, context);
+    }
+
+    /**
+     * Prints the last round of a context as a JSON line
+     */
+    private static void printRound(GameEngine engine, RoundContext context) {
+        var writer = engine.getResultWriter();
+        var buffer = ByteBuffer.allocate(writer.getMaxJsonSize() + 1);
+        writer.writeJson(context, buffer);
+        buffer.put((byte) '\n');
+        System.out.write(buffer.array(), 0, buffer.position());
+        System.out.flush();
+    }
 
-        var matrix = MatrixGenerator.generateRandomMatrix();
+    /**
+     * Runs the Monte Carlo simulation mode: simulate configFile bettingAmount rounds [seed]
+     *
+     * @param args The command line arguments
+     */
+    private static void simulate(String[] args) {
+        if (args.length != 4 && args.length != 5) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies simulate config.json 100 1000000 [seed]");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var bettingAmount = Integer.parseInt(args[2]);
+        var rounds = Long.parseLong(args[3]);
+        var seed = args.length == 5 ? Long.parseLong(args[4]) : ThreadLocalRandom.current().nextLong();
 
-        var appliedWinningCombinations = ScratchGameUtility.findAppliedWinningCombinations(matrix);
+        var start = System.nanoTime();
+        var statistics = new Simulator(config).simulate(rounds, bettingAmount, seed);
+        var elapsed = (System.nanoTime() - start) / 1e9;
 
-        ScratchGameUtility.calculateStandardSymbolReward(appliedWinningCombinations, bettingAmount);
+        System.out.println(statistics.toJson());
+        System.err.printf("Simulated %d rounds with seed %d in %.2f s%n", rounds, seed, elapsed);
+    }
 
-        var appliedBonusSymbol = ScratchGameUtility.findAppliedBonusSymbols(matrix);
+    /**
+     * Runs the exact calculation mode: exact configFile bettingAmount
+     *
+     * @param args The command line arguments
+     */
+    private static void exact(String[] args) {
+        if (args.length != 3) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies exact config.json 100");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var bettingAmount = Integer.parseInt(args[2]);
 
-        System.out.println("{\n\"matrix\": " + matrix + ",");
-        System.out.println("\"reward\": " + ScratchGameUtility.reward + ",");
-        System.out.println("\"applied_winning_combinations\": " + appliedWinningCombinations + ",");
-        System.out.println("\"applied_bonus_symbol\": " + appliedBonusSymbol + "\n}");
+        var start = System.nanoTime();
+        var distribution = new ExactRtpCalculator(config).calculate(bettingAmount);
+        var elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(distribution.toJson());
+        System.err.printf("Calculated %d distinct payouts in %.2f s%n", distribution.getWeights().size(), elapsed);
+    }
+
+    /**
+     * Runs the HTTP play service: serve configFile [port], reloading the configuration file when it changes and
+     * publishing its metrics over JMX. Rounds are journaled to the file named by -Dscratch.journal and the tickets
+     * of the pool named by -Dscratch.pool are issued on /ticket. Given a directory instead of a configuration file,
+     * every {@code <gameId>.json} in it is served on /games/{gameId}/play, keeping at most -Dscratch.registry.capacity
+     * games loaded.
+     *
+     * @param args The command line arguments
+     */
+    private static void serve(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies serve config.json|games/ [8080]");
+            return;
+        }
+        var port = args.length == 3 ? Integer.parseInt(args[2]) : 8080;
+        var metrics = new GameMetrics();
+        try {
+            metrics.registerMBean();
+        } catch (JMException e) {
+            System.err.println("Unable to publish the metrics over JMX: " + e.getMessage());
+        }
+        var dumpSeconds = Long.getLong(METRICS_DUMP_PROPERTY, 0);
+        if (dumpSeconds > 0) {
+            metrics.startDump(Duration.ofSeconds(dumpSeconds), System.err);
+        }
+        try {
+            // A directory of games is served through a registry, a configuration file on disk is watched and
+            // reloaded, a classpath resource is loaded once
+            Supplier<GameEngine> engine = null;
+            GameRegistry registry = null;
+            if (Files.isDirectory(Path.of(args[1]))) {
+                registry = new GameRegistry(Path.of(args[1]), Integer.getInteger(REGISTRY_CAPACITY_PROPERTY,
+                        DEFAULT_REGISTRY_CAPACITY), metrics);
+            } else if (Files.isRegularFile(Path.of(args[1]))) {
+                engine = new ConfigWatcher(Path.of(args[1]), metrics);
+            } else {
+                var fixedEngine = new GameEngine(LoadConfigurationFile.loadConfig(args[1]), metrics);
+                engine = () -> fixedEngine;
+            }
+            // Rounds are seeded per round when they are journaled or a master seed is given
+            var algorithm = System.getProperty(RNG_PROPERTY, RoundRandomSource.DEFAULT_ALGORITHM);
+            var journalFile = System.getProperty(JOURNAL_PROPERTY);
+            var journal = journalFile == null ? null : RoundJournal.open(Path.of(journalFile), algorithm);
+            var seed = Long.getLong(SEED_PROPERTY);
+            var randomSource = journal == null && seed == null ? null
+                    : new RoundRandomSource(algorithm, seed == null ? new SecureRandom().nextLong() : seed,
+                    journal == null ? 0 : journal.getLastRoundId() + 1);
+            var poolFile = System.getProperty(POOL_PROPERTY);
+            var ticketPool = poolFile == null ? null : TicketPool.open(Path.of(poolFile));
+            var server = new PlayServer(engine, port, randomSource, journal, ticketPool, registry);
+            server.start();
+            System.err.println("Serving rounds on port " + server.getPort());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to start the server on port " + port, e);
+        }
+    }
+
+    /**
+     * Runs the streaming batch mode: batch configFile [inputFile], reading standard input without a file and
+     * writing the binary form of the results with -Dscratch.batch.binary=true. Seeded rounds are played on the
+     * generator algorithm named by -Dscratch.rng, like the rounds served and journaled by serve.
+     *
+     * @param args The command line arguments
+     */
+    private static void batch(String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies batch config.json [bets.txt]");
+            return;
+        }
+        var engine = new GameEngine(LoadConfigurationFile.loadConfig(args[1]));
+        var runner = new BatchRunner(engine, Runtime.getRuntime().availableProcessors(),
+                BatchRunner.DEFAULT_CAPACITY, Boolean.getBoolean(BATCH_BINARY_PROPERTY),
+                System.getProperty(RNG_PROPERTY, RoundRandomSource.DEFAULT_ALGORITHM));
+        try (var input = args.length == 3 && !args[2].equals("-")
+                ? Files.newBufferedReader(Path.of(args[2]))
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16);
+             var output = new FileOutputStream(FileDescriptor.out).getChannel()) {
+            runner.run(input, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to run the batch", e);
+        }
+    }
+
+    /**
+     * Replays journaled rounds: replay configFile journalFile [roundId]. A single round is printed, otherwise every
+     * round played on the configuration is checked against its journaled payout.
+     *
+     * @param args The command line arguments
+     */
+    private static void replay(String[] args) {
+        if (args.length != 3 && args.length != 4) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies replay config.json rounds.journal [roundId]");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var engine = new GameEngine(config);
+        var configHash = config.getHashPrefix();
+        try (var journal = RoundJournal.open(Path.of(args[2]))) {
+            var randomSource = new RoundRandomSource(journal.getAlgorithm(), 0);
+            var context = engine.newContext();
+            long replayed = 0;
+            long mismatched = 0;
+            long otherConfig = 0;
+            for (long i = 0; i < journal.size(); i++) {
+                var entry = journal.read(i);
+                if (args.length == 4 && entry.roundId() != Long.parseLong(args[3])) {
+                    continue;
+                }
+                if (entry.configHash() != configHash) {
+                    otherConfig++;
+                    continue;
+                }
+                var payout = engine.play(entry.bettingAmount(), randomSource.create(entry.seed()), context);
+                replayed++;
+                if (payout != entry.payout()) {
+                    mismatched++;
+                    System.err.printf("Round %d paid %d but replays to %d%n", entry.roundId(), entry.payout(),
+                            payout);
+                }
+                if (args.length == 4) {
+                    printRound(engine, context);
+                }
+            }
+            System.err.printf("Replayed %d rounds, %d mismatched, %d played on another configuration%n", replayed,
+                    mismatched, otherConfig);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the journal " + args[2], e);
+        }
+    }
+
+    /**
+     * Builds a ticket pool: pool configFile bettingAmount tickets poolFile [seed]
+     *
+     * @param args The command line arguments
+     */
+    private static void pool(String[] args) {
+        if (args.length != 5 && args.length != 6) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies pool config.json 100 1000000 tickets.pool [seed]");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var bettingAmount = Integer.parseInt(args[2]);
+        var tickets = Long.parseLong(args[3]);
+        var seed = args.length == 6 ? Long.parseLong(args[5]) : new SecureRandom().nextLong();
+
+        var start = System.nanoTime();
+        try {
+            System.out.println(new TicketPoolBuilder(config).build(Path.of(args[4]), bettingAmount, tickets, seed));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to build the ticket pool " + args[4], e);
+        }
+        var elapsed = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Built %d tickets in %.2f s%n", tickets, elapsed);
+    }
+
+    /**
+     * Tunes the weights of a configuration: optimize configFile bettingAmount outputFile target..., every target
+     * being rtp, hit_frequency or volatility followed by =min:max. At most -Dscratch.optimize.evaluations
+     * candidates are evaluated, configurations whose exact calculation costs more than simulating them being
+     * simulated for -Dscratch.optimize.rounds rounds with the seed -Dscratch.optimize.seed.
+     *
+     * @param args The command line arguments
+     */
+    private static void optimize(String[] args) {
+        if (args.length < 5) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies optimize config.json 100 optimized.json rtp=0.94:0.96 [hit_frequency=0.3:0.4] [volatility=5:10]");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var bettingAmount = Integer.parseInt(args[2]);
+        ConfigOptimizer.Band returnToPlayer = null;
+        ConfigOptimizer.Band hitFrequency = null;
+        ConfigOptimizer.Band volatility = null;
+        for (int i = 4; i < args.length; i++) {
+            var separator = args[i].indexOf('=');
+            var target = separator < 0 ? "" : args[i].substring(0, separator);
+            if (!target.equals("rtp") && !target.equals("hit_frequency") && !target.equals("volatility")) {
+                throw new IllegalArgumentException("Unknown target: " + args[i]);
+            }
+            ConfigOptimizer.Band band;
+            try {
+                band = ConfigOptimizer.Band.parse(args[i].substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid band of target: " + args[i], e);
+            }
+            switch (target) {
+                case "rtp" -> returnToPlayer = band;
+                case "hit_frequency" -> hitFrequency = band;
+                default -> volatility = band;
+            }
+        }
+        var seed = Long.getLong(OPTIMIZE_SEED_PROPERTY, ThreadLocalRandom.current().nextLong());
+        var optimizer = new ConfigOptimizer(config, bettingAmount,
+                new ConfigOptimizer.Targets(returnToPlayer, hitFrequency, volatility),
+                Long.getLong(OPTIMIZE_ROUNDS_PROPERTY, DEFAULT_OPTIMIZE_ROUNDS), seed);
+
+        var start = System.nanoTime();
+        var result = optimizer.optimize(Integer.getInteger(OPTIMIZE_EVALUATIONS_PROPERTY,
+                DEFAULT_OPTIMIZE_EVALUATIONS));
+        var elapsed = (System.nanoTime() - start) / 1e9;
+        try {
+            Files.writeString(Path.of(args[3]), result.config().toJson());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write the configuration " + args[3], e);
+        }
+
+        System.out.println(result.toJson());
+        System.err.printf("Evaluated %d candidates in %.2f s%n", result.evaluations(), elapsed);
+    }
+
+    /**
+     * Simulates one shard of a simulation: shard configFile bettingAmount rounds seed index count shardFile,
+     * resuming from the checkpoint in the shard file if there is one
+     *
+     * @param args The command line arguments
+     */
+    private static void shard(String[] args) {
+        if (args.length != 8) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies shard config.json 100 100000000000 seed 0 8 shard-0.bin");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        var shard = new SimulationShard(config, Integer.parseInt(args[2]), Long.parseLong(args[3]),
+                Long.parseLong(args[4]), Integer.parseInt(args[5]), Integer.parseInt(args[6]));
+
+        var start = System.nanoTime();
+        SimulationStatistics statistics;
+        try {
+            statistics = shard.run(Path.of(args[7]));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to run the shard " + args[7], e);
+        }
+        var elapsed = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Shard %d of %d holds %d rounds, finished in %.2f s%n", shard.getIndex(),
+                shard.getCount(), statistics.getRounds(), elapsed);
+    }
+
+    /**
+     * Runs a simulation in local processes: shards configFile bettingAmount rounds seed count directory. Running
+     * it again on the same directory resumes the shards that did not finish.
+     *
+     * @param args The command line arguments
+     */
+    private static void shards(String[] args) {
+        if (args.length != 7) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies shards config.json 100 100000000000 seed 8 shards/");
+            return;
+        }
+        var start = System.nanoTime();
+        SimulationStatistics statistics;
+        try {
+            statistics = SimulationShard.launch(args[1], Integer.parseInt(args[2]), Long.parseLong(args[3]),
+                    Long.parseLong(args[4]), Integer.parseInt(args[5]), Path.of(args[6]));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to run the shards in " + args[6], e);
+        }
+        var elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(statistics.toJson());
+        System.err.printf("Simulated %d rounds in %s shards in %.2f s%n", statistics.getRounds(), args[5], elapsed);
+    }
+
+    /**
+     * Merges the files of every shard of a simulation: merge configFile shardFile...
+     *
+     * @param args The command line arguments
+     */
+    private static void merge(String[] args) {
+        if (args.length < 3) {
+            System.out.println(
+                    "Please give in the proper format like : java -jar build_scratch-game-1.0-SNAPSHOT-jar-with-dependencies merge config.json shard-0.bin shard-1.bin ...");
+            return;
+        }
+        var config = LoadConfigurationFile.loadConfig(args[1]);
+        try {
+            var files = Arrays.stream(args, 2, args.length).map(Path::of).toList();
+            System.out.println(SimulationShard.merge(config, files).toJson());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to merge the shards", e);
+        }
     }
 }
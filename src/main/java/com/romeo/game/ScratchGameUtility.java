@@ -4,86 +4,161 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Random;
 
 public class ScratchGameUtility {
 
-    public static int columns;
-    public static int rows;
-    public static int reward;
-    public static Map<String, Symbol> symbols = new HashMap<>();
-    public static List<Probability> standardSymbolProbabilities = new ArrayList<>();
-    public static Map<String, Integer> bonusSymbolProbabilities = new HashMap<>();
-    public static Map<String, WinCombination> winCombinations = new HashMap<>();
-    public static Random random = new Random();
+    /**
+     *
+     * Applies a single symbol of the game matrix to the reward according to its configured impact
+     *
+     * @param config The game configuration
+     * @param symbol The symbol
+     * @param reward The reward so far
+     * @return The reward after applying the symbol
+     */
+    public static int applyBonusSymbol(GameConfig config, String symbol, int reward) {
+        Symbol symbolData = config.getSymbols().get(symbol);
+        return BonusImpact.of(symbolData).apply(symbolData, reward);
+    }
+
+    /**
+     *
+     * Checks whether a symbol can change the reward in {@link #applyBonusSymbol(GameConfig, String, int)}
+     *
+     * @param config The game configuration
+     * @param symbol The symbol
+     * @return true if the symbol has a bonus effect
+     */
+    public static boolean hasBonusEffect(GameConfig config, String symbol) {
+        return BonusImpact.of(config.getSymbols().get(symbol)) != BonusImpact.NONE;
+    }
+
+    /**
+     *
+     * Calculates the reward after applying the bonus symbols of the game matrix in row order
+     *
+     * @param config The game configuration
+     * @param matrix The game matrix
+     * @param reward The standard symbol reward
+     * @return The final reward
+     */
+    public static int calculateBonusSymbolReward(GameConfig config, List<List<String>> matrix, int reward) {
+        for (List<String> row : matrix) {
+            for (String symbol : row) {
+                reward = applyBonusSymbol(config, symbol, reward);
+            }
+        }
+        return reward;
+    }
 
     /**
      *
-     * Calculates the reward for a bonus symbol if applied in the game matrix
+     * Calculates the reward of a single symbol for its applied winning combinations
      *
-     * @param symbol The bonus symbol
+     * @param config             The game configuration
+     * @param symbol             The symbol
+     * @param winCombinationList The winning combinations applied to the symbol
+     * @param bettingAmount      The betting amount
+     * @return The reward of the symbol
+     * @throws ConfigurationException If the symbol is not defined in the configuration, which a validated
+     *                                configuration never lets into the matrix
      */
-    private static void calculateBonusSymbolReward(String symbol) {
-        if (reward != 0) {
-            if (symbol.equalsIgnoreCase("10x") || symbol.equalsIgnoreCase("5x")) {
-                double winReward = (reward * symbols.get(symbol).rewardMultiplier);
-                reward = (int) winReward;
-            } else if (symbol.equalsIgnoreCase("+1000") || symbol.equalsIgnoreCase("+500")) {
-                double winReward = reward + symbols.get(symbol).getExtra();
-                reward = (int) winReward;
+    public static double calculateSymbolReward(GameConfig config, String symbol, List<String> winCombinationList,
+                                               int bettingAmount) {
+        double symbolreward = 0.0;
+        Symbol symbolData = config.getSymbols().get(symbol);
+        if (symbolData != null) {
+            double winReward = bettingAmount * symbolData.rewardMultiplier;
+            int SymbolTotalReward = 1;
+            for (String appliedList : winCombinationList) {
+                WinCombination winCombination = config.getWinCombinations().get(appliedList);
+                if (SymbolTotalReward == 1) {
+                    winReward = winReward * winCombination.rewardMultiplier;
+                    symbolreward += winReward;
+                } else {
+                    symbolreward = (symbolreward * winCombination.rewardMultiplier);
+                }
+                SymbolTotalReward++;
             }
+        } else {
+            throw new ConfigurationException("Symbol " + symbol + " is not defined in symbols");
         }
+        return symbolreward;
+    }
+
+    /**
+     *
+     * Calculates the reward of a single interned symbol for a bitset of applied winning combinations,
+     * multiplying in the same order as {@link #calculateSymbolReward(GameConfig, String, List, int)}
+     *
+     * @param config        The game configuration
+     * @param symbolId      The interned symbol id
+     * @param applied       The bitset of applied combination ids
+     * @param bettingAmount The betting amount
+     * @return The reward of the symbol
+     */
+    public static double calculateSymbolReward(GameConfig config, int symbolId, long applied, int bettingAmount) {
+        if (applied == 0 || config.getSymbolTable().getSymbol(symbolId) == null) {
+            return 0.0;
+        }
+        var evaluator = config.getWinCombinationEvaluator();
+        double symbolreward = bettingAmount * config.getSymbolTable().getRewardMultiplier(symbolId);
+        while (applied != 0) {
+            symbolreward = symbolreward * evaluator.getRewardMultiplier(Long.numberOfTrailingZeros(applied));
+            applied &= applied - 1;
+        }
+        return symbolreward;
+    }
+
+    /**
+     *
+     * Narrows a reward summed in a long to an int, saturating at the bounds of an int like the casts of the
+     * double arithmetic the rewards were first summed in, instead of wrapping around
+     *
+     * @param reward The summed reward
+     * @return The reward, clamped to the range of an int
+     */
+    public static int saturate(long reward) {
+        return Math.clamp(reward, Integer.MIN_VALUE, Integer.MAX_VALUE);
     }
 
     /**
      *
-     * Calculates the rewards for the applied standard symbol winning combinations
+     * Calculates the rewards for the applied standard symbol winning combinations.
+     * Every symbol's reward is truncated on its own, so the total does not depend
+     * on the order in which the symbols are visited, and a total beyond the range
+     * of an int is clamped to it.
      *
+     * @param config                     The game configuration
      * @param appliedWinningCombinations A map containing applied winning
      *                                   combinations for each symbol
      * @param bettingAmount              The betting amount
+     * @return The standard symbol reward
      */
-    public static void calculateStandardSymbolReward(Map<String, List<String>> appliedWinningCombinations,
-                                                     int bettingAmount) {
-        reward = 0;
-        for (String symbol : appliedWinningCombinations.keySet()) {
-            double symbolreward = 0.0;
-            List<String> winCombinationList = appliedWinningCombinations.get(symbol);
-            Symbol symbolData = symbols.get(symbol);
-            if (symbolData != null) {
-                double winReward = bettingAmount * symbolData.rewardMultiplier;
-                int SymbolTotalReward = 1;
-                for (String appliedList : winCombinationList) {
-                    WinCombination winCombination = winCombinations.get(appliedList);
-                    if (SymbolTotalReward == 1) {
-                        winReward = winReward * winCombination.rewardMultiplier;
-                        symbolreward += winReward;
-                    } else {
-                        symbolreward = (symbolreward * winCombination.rewardMultiplier);
-                    }
-                    SymbolTotalReward++;
-                }
-            } else {
-                System.out.println("Symbol data not found for symbol: " + symbol);
-            }
-            reward += symbolreward;
+    public static int calculateStandardSymbolReward(GameConfig config,
+                                                    Map<String, List<String>> appliedWinningCombinations,
+                                                    int bettingAmount) {
+        long reward = 0;
+        for (Map.Entry<String, List<String>> entry : appliedWinningCombinations.entrySet()) {
+            reward += (int) calculateSymbolReward(config, entry.getKey(), entry.getValue(), bettingAmount);
         }
+        return saturate(reward);
     }
 
     /**
      * Finds and returns a list of applied bonus symbols in the matrix
      *
+     * @param config The game configuration
      * @param matrix The game matrix
      * @return A list of applied bonus symbols
      */
-    public static List<String> findAppliedBonusSymbols(List<List<String>> matrix) {
+    public static List<String> findAppliedBonusSymbols(GameConfig config, List<List<String>> matrix) {
         List<String> bonusSymbols = new ArrayList<>();
         for (List<String> row : matrix) {
             for (String symbol : row) {
-                if (!symbol.equalsIgnoreCase("MISS") && bonusSymbolProbabilities.keySet().contains(symbol)) {
+                if (!symbol.equalsIgnoreCase("MISS") && config.getBonusSymbolProbabilities().containsKey(symbol)) {
                     bonusSymbols.add(symbol);
                 }
-                calculateBonusSymbolReward(symbol);
             }
         }
         return bonusSymbols;
@@ -94,55 +169,34 @@ public class ScratchGameUtility {
      * Finds and returns the applied winning combinations for each symbol in the
      * matrix
      *
+     * @param config The game configuration
      * @param matrix The game matrix
      * @return A map containing applied winning combinations for each symbol
      */
-    public static Map<String, List<String>> findAppliedWinningCombinations(List<List<String>> matrix) {
+    public static Map<String, List<String>> findAppliedWinningCombinations(GameConfig config,
+                                                                        List<List<String>> matrix) {
         Map<String, List<String>> appliedWinningCombinations = new HashMap<>();
+        Map<String, long[]> symbolOccupancy = new HashMap<>();
         Map<String, Integer> symbolCounts = new HashMap<>();
 
-        for (List<String> row : matrix) {
-            for (String symbol : row) {
-                symbolCounts.put(symbol, symbolCounts.getOrDefault(symbol, 0) + 1);
+        var winCombinationEvaluator = config.getWinCombinationEvaluator();
+        var columns = winCombinationEvaluator.getColumns();
+        for (int row = 0; row < matrix.size(); row++) {
+            List<String> symbolRow = matrix.get(row);
+            for (int column = 0; column < symbolRow.size(); column++) {
+                var board = symbolOccupancy.computeIfAbsent(symbolRow.get(column),
+                        symbol -> new long[winCombinationEvaluator.getBoardWords()]);
+                winCombinationEvaluator.mark(board, 0, row * columns + column);
+                symbolCounts.merge(symbolRow.get(column), 1, Integer::sum);
             }
         }
-        for (String symbol : symbolCounts.keySet()) {
-            int count = symbolCounts.get(symbol);
-
-            if (count >= 3) {
-                List<String> appliedCombinations = new ArrayList<>();
-                for (String winCombinationKey : winCombinations.keySet()) {
-                    WinCombination winCombination = winCombinations.get(winCombinationKey);
-
-                    if (winCombination.count <= count) {
-                        if (winCombination.when.equals("same_symbols")) {
-                            if (symbol.equals("MISS")) {
-                                continue;
-                            }
-                        } else if (winCombination.when.equals("linear_symbols")) {
-                            boolean match = false;
-                            for (List<String> area : winCombination.coveredAreas) {
-                                match = true;
-                                for (String cell : area) {
-                                    int row = Integer.parseInt(cell.split(":")[0]);
-                                    int column = Integer.parseInt(cell.split(":")[1]);
-                                    if (!matrix.get(row).get(column).equals(symbol)) {
-                                        match = false;
-                                        break;
-                                    }
-                                }
-                                if (match) {
-                                    break;
-                                }
-                            }
-                            if (!match) {
-                                continue;
-                            }
-                        }
-                        appliedCombinations.add(winCombinationKey);
-                    }
-                }
-                appliedWinningCombinations.put(symbol, appliedCombinations);
+        var scratch = new long[winCombinationEvaluator.getScratchSize()];
+        for (Map.Entry<String, long[]> entry : symbolOccupancy.entrySet()) {
+            int count = symbolCounts.get(entry.getKey());
+            if (count >= WinCombinationEvaluator.MIN_SYMBOL_COUNT) {
+                long applied = winCombinationEvaluator.evaluate(entry.getValue(), 0, count,
+                        entry.getKey().equals("MISS"), scratch);
+                appliedWinningCombinations.put(entry.getKey(), winCombinationEvaluator.toCombinationKeys(applied));
             }
         }
         return appliedWinningCombinations;
@@ -0,0 +1,297 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * One shard of a simulation split over several processes, for runs too long for a single JVM.
+ * <p>
+ * The rounds are cut into blocks of {@value #BLOCK_ROUNDS} rounds, the last one possibly shorter, and block
+ * {@code b} plays the {@code b}-th stream split off a {@link SplittableRandom} seeded with the simulation's seed.
+ * Shard {@code i} of {@code n} plays the blocks from {@code i * blocks / n} up to {@code (i + 1) * blocks / n}.
+ * The rounds of a block only depend on the seed and the block's index and all sums of the
+ * {@link SimulationStatistics} are integers, so merging the shards gives exactly the same statistics however many
+ * shards the simulation is split into. The block streams differ from the split tree of {@link Simulator}, so the
+ * figures are not those of a single simulation with the same seed.
+ * <p>
+ * A shard keeps its statistics in a file of a {@value #HEADER_SIZE} byte header, describing the simulation and the
+ * next block to play, followed by the binary form of the statistics. The file is rewritten atomically every
+ * {@value #CHECKPOINT_BLOCKS} blocks, so a shard restarted on the same file resumes from its last checkpoint.
+ */
+public class SimulationShard {
+
+    public static final int HEADER_SIZE = 64;
+
+    // The number of rounds played on one random stream
+    static final long BLOCK_ROUNDS = 1 << 16;
+
+    // The number of blocks played in parallel between two checkpoints
+    private static final int CHECKPOINT_BLOCKS = 64;
+
+    // "SSHD", the first bytes of every shard file
+    private static final int MAGIC = 0x53534844;
+
+    private static final int VERSION = 1;
+
+    private static final int BETTING_AMOUNT_OFFSET = 8;
+    private static final int INDEX_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int STATISTICS_SIZE_OFFSET = 20;
+    private static final int ROUNDS_OFFSET = 24;
+    private static final int SEED_OFFSET = 32;
+    private static final int CONFIG_HASH_OFFSET = 40;
+    private static final int NEXT_BLOCK_OFFSET = 48;
+
+    private final GameConfig config;
+
+    private final int bettingAmount;
+
+    private final long rounds;
+
+    private final long seed;
+
+    private final int index;
+
+    private final int count;
+
+    public SimulationShard(GameConfig config, int bettingAmount, long rounds, long seed, int index, int count) {
+        if (count <= 0 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        this.config = config;
+        this.bettingAmount = bettingAmount;
+        this.rounds = rounds;
+        this.seed = seed;
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Plays the rounds of the shard on the common fork-join pool, resuming from the checkpoint in the file if it
+     * holds one for the same simulation
+     *
+     * @param file The shard file
+     * @return The statistics of the shard
+     * @throws IOException If the file cannot be read or written, or holds another simulation
+     */
+    public SimulationStatistics run(Path file) throws IOException {
+        var statistics = SimulationStatistics.forConfig(config);
+        var blocks = getBlocks();
+        var firstBlock = index * blocks / count;
+        var lastBlock = (index + 1) * blocks / count;
+        var nextBlock = firstBlock;
+        if (Files.exists(file)) {
+            var header = readHeader(file, statistics);
+            if (header.getInt(BETTING_AMOUNT_OFFSET) != bettingAmount || header.getInt(INDEX_OFFSET) != index
+                    || header.getInt(COUNT_OFFSET) != count || header.getLong(ROUNDS_OFFSET) != rounds
+                    || header.getLong(SEED_OFFSET) != seed
+                    || header.getLong(CONFIG_HASH_OFFSET) != config.getHashPrefix()) {
+                throw new IOException(file + " holds another simulation or shard");
+            }
+            nextBlock = header.getLong(NEXT_BLOCK_OFFSET);
+        }
+
+        var simulator = new Simulator(config);
+        var runRounds = (lastBlock - nextBlock) * BLOCK_ROUNDS;
+        var root = new SplittableRandom(seed);
+        for (long block = 0; block < nextBlock; block++) {
+            root.split();
+        }
+        while (nextBlock < lastBlock) {
+            var streams = new SplittableRandom[(int) Math.min(CHECKPOINT_BLOCKS, lastBlock - nextBlock)];
+            for (int i = 0; i < streams.length; i++) {
+                streams[i] = root.split();
+            }
+            var start = nextBlock;
+            IntStream.range(0, streams.length).parallel()
+                    .mapToObj(i -> simulator.playRounds(getBlockRounds(start + i), bettingAmount, streams[i],
+                            runRounds))
+                    .toList()
+                    .forEach(statistics::merge);
+            nextBlock += streams.length;
+            writeFile(file, statistics, nextBlock);
+        }
+        if (!Files.exists(file)) {
+            writeFile(file, statistics, nextBlock);
+        }
+        return statistics;
+    }
+
+    /**
+     * Returns the number of blocks of the whole simulation
+     */
+    public long getBlocks() {
+        return (rounds + BLOCK_ROUNDS - 1) / BLOCK_ROUNDS;
+    }
+
+    private long getBlockRounds(long block) {
+        return Math.min(BLOCK_ROUNDS, rounds - block * BLOCK_ROUNDS);
+    }
+
+    private void writeFile(Path file, SimulationStatistics statistics, long nextBlock) throws IOException {
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + statistics.getBinarySize());
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(BETTING_AMOUNT_OFFSET, bettingAmount)
+                .putInt(INDEX_OFFSET, index)
+                .putInt(COUNT_OFFSET, count)
+                .putInt(STATISTICS_SIZE_OFFSET, statistics.getBinarySize())
+                .putLong(ROUNDS_OFFSET, rounds)
+                .putLong(SEED_OFFSET, seed)
+                .putLong(CONFIG_HASH_OFFSET, config.getHashPrefix())
+                .putLong(NEXT_BLOCK_OFFSET, nextBlock);
+        statistics.writeTo(buffer.position(HEADER_SIZE));
+        buffer.flip();
+        // Written next to the file and moved over it, so a crash leaves the previous checkpoint intact
+        var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a shard file, loading its statistics
+     *
+     * @return The header
+     */
+    private static ByteBuffer readHeader(Path file, SimulationStatistics statistics) throws IOException {
+        var buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.remaining() != HEADER_SIZE + buffer.getInt(STATISTICS_SIZE_OFFSET)) {
+            throw new IOException(file + " is not a simulation shard");
+        }
+        try {
+            statistics.readFrom(buffer.slice(HEADER_SIZE, buffer.getInt(STATISTICS_SIZE_OFFSET)));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+        return buffer;
+    }
+
+    /**
+     * Merges the files of all shards of a simulation
+     *
+     * @param config The configuration the shards were played on
+     * @param files  The shard files, one per shard
+     * @return The statistics of the whole simulation
+     * @throws IOException If a file cannot be read, belongs to another simulation, is not finished, or a shard is
+     *                     missing or given twice
+     */
+    public static SimulationStatistics merge(GameConfig config, List<Path> files) throws IOException {
+        var merged = SimulationStatistics.forConfig(config);
+        ByteBuffer first = null;
+        boolean[] found = null;
+        for (Path file : files) {
+            var statistics = SimulationStatistics.forConfig(config);
+            var header = readHeader(file, statistics);
+            if (first == null) {
+                first = header;
+                found = new boolean[header.getInt(COUNT_OFFSET)];
+            }
+            if (header.getInt(BETTING_AMOUNT_OFFSET) != first.getInt(BETTING_AMOUNT_OFFSET)
+                    || header.getInt(COUNT_OFFSET) != first.getInt(COUNT_OFFSET)
+                    || header.getLong(ROUNDS_OFFSET) != first.getLong(ROUNDS_OFFSET)
+                    || header.getLong(SEED_OFFSET) != first.getLong(SEED_OFFSET)
+                    || header.getLong(CONFIG_HASH_OFFSET) != config.getHashPrefix()) {
+                throw new IOException(file + " belongs to another simulation than " + files.get(0));
+            }
+            var shard = new SimulationShard(config, header.getInt(BETTING_AMOUNT_OFFSET),
+                    header.getLong(ROUNDS_OFFSET), header.getLong(SEED_OFFSET), header.getInt(INDEX_OFFSET),
+                    header.getInt(COUNT_OFFSET));
+            if (header.getLong(NEXT_BLOCK_OFFSET) != (shard.index + 1) * shard.getBlocks() / shard.count) {
+                throw new IOException(file + " holds an unfinished shard, run it again to resume it");
+            }
+            if (found[shard.index]) {
+                throw new IOException("Shard " + shard.index + " is given twice");
+            }
+            found[shard.index] = true;
+            merged.merge(statistics);
+        }
+        if (found == null) {
+            throw new IOException("No shard files given");
+        }
+        for (int shard = 0; shard < found.length; shard++) {
+            if (!found[shard]) {
+                throw new IOException("Shard " + shard + " of " + found.length + " is missing");
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Runs every shard of a simulation in its own local process and merges them. The processes run the
+     * {@code shard} mode of {@link ScratchGame} with the options of this JVM, splitting the cores between them, and
+     * write their files to a directory, so running the same simulation again resumes the unfinished shards.
+     *
+     * @param configFile    The configuration file
+     * @param bettingAmount The betting amount of every round
+     * @param rounds        The number of rounds of the whole simulation
+     * @param seed          The seed of the simulation
+     * @param count         The number of shards
+     * @param directory     The directory of the shard files
+     * @return The statistics of the whole simulation
+     * @throws IOException If a process cannot be started or fails
+     */
+    public static SimulationStatistics launch(String configFile, int bettingAmount, long rounds, long seed, int count,
+                                              Path directory) throws IOException {
+        Files.createDirectories(directory);
+        var java = ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        List<String> options = new ArrayList<>(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        if (options.stream().noneMatch(option -> option.startsWith("-Djava.util.concurrent.ForkJoinPool"))) {
+            var parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / count);
+            options.add("-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + parallelism);
+        }
+        List<Path> files = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int index = 0; index < count; index++) {
+                var file = directory.resolve("shard-" + index + "-of-" + count + ".bin");
+                files.add(file);
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(options);
+                command.addAll(List.of("-cp", System.getProperty("java.class.path"), ScratchGame.class.getName(),
+                        "shard", configFile, Integer.toString(bettingAmount), Long.toString(rounds),
+                        Long.toString(seed), Integer.toString(index), Integer.toString(count), file.toString()));
+                processes.add(new ProcessBuilder(command).inheritIO().start());
+            }
+            for (int index = 0; index < count; index++) {
+                var exitCode = processes.get(index).waitFor();
+                if (exitCode != 0) {
+                    throw new IOException("Shard " + index + " failed with exit code " + exitCode
+                            + ", run the simulation again to resume it");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the shards", e);
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+        return merge(LoadConfigurationFile.loadConfig(configFile), files);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,366 @@
+package com.romeo.game;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mergeable statistics over a number of simulated rounds. All sums are kept as integers, so merging the
+ * statistics of any split of the rounds gives exactly the same totals as accumulating them in one pass.
+ */
+public class SimulationStatistics {
+
+    // Upper bounds (inclusive, as a multiple of the bet) of the payout histogram buckets after the "no win" bucket
+    public static final double[] HISTOGRAM_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000};
+
+    private final String[] combinationKeys;
+
+    private final String[] bonusSymbols;
+
+    private long rounds;
+
+    private long totalBet;
+
+    private long totalPaid;
+
+    private long hits;
+
+    private long maxWin;
+
+    // The sum of squared payouts as an unsigned 128 bit value
+    private long paidSquaresHigh;
+
+    private long paidSquaresLow;
+
+    // Bucket 0 counts losing rounds, the last bucket wins above the largest bound
+    private final long[] histogram = new long[HISTOGRAM_BOUNDS.length + 2];
+
+    private final long[] combinationCounts;
+
+    private final long[] bonusSymbolCounts;
+
+    public SimulationStatistics(String[] combinationKeys, String[] bonusSymbols) {
+        this.combinationKeys = combinationKeys;
+        this.bonusSymbols = bonusSymbols;
+        this.combinationCounts = new long[combinationKeys.length];
+        this.bonusSymbolCounts = new long[bonusSymbols.length];
+    }
+
+    /**
+     * Creates empty statistics for the combinations and bonus symbols of a configuration
+     *
+     * @param config The game configuration
+     * @return The empty statistics
+     */
+    public static SimulationStatistics forConfig(GameConfig config) {
+        var evaluator = config.getWinCombinationEvaluator();
+        var combinationKeys = new String[evaluator.getCombinationCount()];
+        for (int id = 0; id < combinationKeys.length; id++) {
+            combinationKeys[id] = evaluator.getCombinationKey(id);
+        }
+        var bonusSymbols = config.getBonusSymbolProbabilities().keySet().stream()
+                .filter(symbol -> !symbol.equalsIgnoreCase("MISS"))
+                .toArray(String[]::new);
+        return new SimulationStatistics(combinationKeys, bonusSymbols);
+    }
+
+    /**
+     * Records the outcome of a round
+     *
+     * @param bettingAmount The betting amount of the round
+     * @param payout        The reward paid for the round
+     */
+    public void recordRound(int bettingAmount, long payout) {
+        rounds++;
+        totalBet += bettingAmount;
+        totalPaid += payout;
+        addPaidSquare(Math.multiplyHigh(payout, payout), payout * payout);
+        if (payout > 0) {
+            hits++;
+        }
+        maxWin = Math.max(maxWin, payout);
+        histogram[histogramBucket(bettingAmount, payout)]++;
+    }
+
+    /**
+     * Counts a triggered win combination
+     *
+     * @param combinationId The id of the combination in the configuration's evaluator
+     */
+    public void recordCombination(int combinationId) {
+        combinationCounts[combinationId]++;
+    }
+
+    /**
+     * Counts an applied bonus symbol
+     *
+     * @param bonusSymbolIndex The index of the symbol in {@link #getBonusSymbols()}
+     */
+    public void recordBonusSymbol(int bonusSymbolIndex) {
+        bonusSymbolCounts[bonusSymbolIndex]++;
+    }
+
+    /**
+     * Adds the statistics of another set of rounds over the same configuration
+     *
+     * @param other The statistics to add
+     */
+    public void merge(SimulationStatistics other) {
+        rounds += other.rounds;
+        totalBet += other.totalBet;
+        totalPaid += other.totalPaid;
+        hits += other.hits;
+        maxWin = Math.max(maxWin, other.maxWin);
+        addPaidSquare(other.paidSquaresHigh, other.paidSquaresLow);
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        for (int i = 0; i < combinationCounts.length; i++) {
+            combinationCounts[i] += other.combinationCounts[i];
+        }
+        for (int i = 0; i < bonusSymbolCounts.length; i++) {
+            bonusSymbolCounts[i] += other.bonusSymbolCounts[i];
+        }
+    }
+
+    /**
+     * Returns the number of bytes of {@link #writeTo(ByteBuffer)}
+     */
+    public int getBinarySize() {
+        return 7 * Long.BYTES + 3 * Integer.BYTES
+                + (histogram.length + combinationCounts.length + bonusSymbolCounts.length) * Long.BYTES;
+    }
+
+    /**
+     * Writes the counters in a compact binary form: the round and payout totals followed by the histogram, the
+     * combination counts and the bonus symbol counts, each array preceded by its length. The keys are not written,
+     * they are implied by the configuration.
+     *
+     * @param buffer The buffer, with at least {@link #getBinarySize()} bytes remaining
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(rounds).putLong(totalBet).putLong(totalPaid).putLong(hits).putLong(maxWin)
+                .putLong(paidSquaresHigh).putLong(paidSquaresLow);
+        for (long[] counts : new long[][]{histogram, combinationCounts, bonusSymbolCounts}) {
+            buffer.putInt(counts.length);
+            for (long count : counts) {
+                buffer.putLong(count);
+            }
+        }
+    }
+
+    /**
+     * Replaces the counters by the ones written by {@link #writeTo(ByteBuffer)} for the same configuration
+     *
+     * @param buffer The buffer, positioned at the counters
+     * @throws IllegalArgumentException If the counters were written for other combinations or bonus symbols
+     */
+    public void readFrom(ByteBuffer buffer) {
+        rounds = buffer.getLong();
+        totalBet = buffer.getLong();
+        totalPaid = buffer.getLong();
+        hits = buffer.getLong();
+        maxWin = buffer.getLong();
+        paidSquaresHigh = buffer.getLong();
+        paidSquaresLow = buffer.getLong();
+        for (long[] counts : new long[][]{histogram, combinationCounts, bonusSymbolCounts}) {
+            var length = buffer.getInt();
+            if (length != counts.length) {
+                throw new IllegalArgumentException("Statistics of " + length + " counters where " + counts.length
+                        + " were expected, they were written for another configuration");
+            }
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buffer.getLong();
+            }
+        }
+    }
+
+    private void addPaidSquare(long high, long low) {
+        long sum = paidSquaresLow + low;
+        paidSquaresHigh += high + (Long.compareUnsigned(sum, paidSquaresLow) < 0 ? 1 : 0);
+        paidSquaresLow = sum;
+    }
+
+    private static int histogramBucket(int bettingAmount, long payout) {
+        if (payout <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            if (payout <= bettingAmount * HISTOGRAM_BOUNDS[i]) {
+                return i + 1;
+            }
+        }
+        return HISTOGRAM_BOUNDS.length + 1;
+    }
+
+    /**
+     * Returns the return to player, the total paid divided by the total bet
+     *
+     * @return The return to player
+     */
+    public double getReturnToPlayer() {
+        return totalBet == 0 ? 0.0 : (double) totalPaid / totalBet;
+    }
+
+    /**
+     * Returns the share of rounds with a payout
+     *
+     * @return The hit frequency
+     */
+    public double getHitFrequency() {
+        return rounds == 0 ? 0.0 : (double) hits / rounds;
+    }
+
+    /**
+     * Returns the population variance of the payout per round
+     *
+     * @return The payout variance
+     */
+    public double getPayoutVariance() {
+        if (rounds == 0) {
+            return 0.0;
+        }
+        var count = BigInteger.valueOf(rounds);
+        var paid = BigInteger.valueOf(totalPaid);
+        // (n * sum(x^2) - sum(x)^2) / n^2, computed exactly before the final division
+        var numerator = getPaidSquares().multiply(count).subtract(paid.multiply(paid));
+        return new BigDecimal(numerator).divide(new BigDecimal(count.multiply(count)), MathContext.DECIMAL64)
+                .doubleValue();
+    }
+
+    /**
+     * Returns the standard deviation of the payout per round
+     *
+     * @return The payout standard deviation
+     */
+    public double getPayoutStandardDeviation() {
+        return Math.sqrt(getPayoutVariance());
+    }
+
+    /**
+     * Returns the sum of squared payouts
+     *
+     * @return The exact sum of squared payouts
+     */
+    public BigInteger getPaidSquares() {
+        return BigInteger.valueOf(paidSquaresHigh).shiftLeft(Long.SIZE)
+                .add(new BigInteger(Long.toUnsignedString(paidSquaresLow)));
+    }
+
+    /**
+     * Returns the trigger counts of every win combination by key
+     *
+     * @return The combination counts in configuration order
+     */
+    public Map<String, Long> getCombinationCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < combinationKeys.length; i++) {
+            counts.put(combinationKeys[i], combinationCounts[i]);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the counts of every applied bonus symbol by name
+     *
+     * @return The bonus symbol counts in configuration order
+     */
+    public Map<String, Long> getBonusSymbolCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < bonusSymbols.length; i++) {
+            counts.put(bonusSymbols[i], bonusSymbolCounts[i]);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the histogram bucket labels, as payout ranges in multiples of the bet
+     *
+     * @return The bucket labels
+     */
+    public static List<String> getHistogramLabels() {
+        var labels = new String[HISTOGRAM_BOUNDS.length + 2];
+        labels[0] = "0";
+        double lower = 0;
+        for (int i = 0; i < HISTOGRAM_BOUNDS.length; i++) {
+            labels[i + 1] = "(" + formatBound(lower) + "x, " + formatBound(HISTOGRAM_BOUNDS[i]) + "x]";
+            lower = HISTOGRAM_BOUNDS[i];
+        }
+        labels[labels.length - 1] = ">" + formatBound(lower) + "x";
+        return Arrays.asList(labels);
+    }
+
+    private static String formatBound(double bound) {
+        return bound == Math.rint(bound) ? Long.toString((long) bound) : Double.toString(bound);
+    }
+
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public String[] getBonusSymbols() {
+        return bonusSymbols.clone();
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    public long getTotalBet() {
+        return totalBet;
+    }
+
+    public long getTotalPaid() {
+        return totalPaid;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMaxWin() {
+        return maxWin;
+    }
+
+    /**
+     * Formats the statistics as a JSON document
+     *
+     * @return The JSON report
+     */
+    public String toJson() {
+        var json = new StringBuilder("{\n");
+        json.append("\"rounds\": ").append(rounds).append(",\n");
+        json.append("\"total_bet\": ").append(totalBet).append(",\n");
+        json.append("\"total_paid\": ").append(totalPaid).append(",\n");
+        json.append("\"rtp\": ").append(getReturnToPlayer()).append(",\n");
+        json.append("\"hit_frequency\": ").append(getHitFrequency()).append(",\n");
+        json.append("\"payout_variance\": ").append(getPayoutVariance()).append(",\n");
+        json.append("\"payout_standard_deviation\": ").append(getPayoutStandardDeviation()).append(",\n");
+        json.append("\"max_win\": ").append(maxWin).append(",\n");
+        json.append("\"payout_histogram\": {");
+        var labels = getHistogramLabels();
+        for (int i = 0; i < histogram.length; i++) {
+            json.append(i == 0 ? "" : ", ").append('"').append(labels.get(i)).append("\": ").append(histogram[i]);
+        }
+        json.append("},\n\"win_combinations\": ");
+        appendCounts(json, getCombinationCounts());
+        json.append(",\n\"bonus_symbols\": ");
+        appendCounts(json, getBonusSymbolCounts());
+        return json.append("\n}").toString();
+    }
+
+    private static void appendCounts(StringBuilder json, Map<String, Long> counts) {
+        json.append('{');
+        var first = true;
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+            first = false;
+        }
+        json.append('}');
+    }
+}
@@ -0,0 +1,124 @@
+package com.romeo.game;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo simulator playing a large number of rounds on all cores to estimate the return to player
+ * and the payout distribution of a configuration.
+ * <p>
+ * The rounds are split recursively on a fork-join pool and every split derives its own
+ * {@link SplittableRandom} stream. The split tree only depends on the number of rounds, so a run with a
+ * given seed gives the same statistics regardless of the number of threads.
+ */
+public class Simulator {
+
+    // The number of rounds played by a single task without further splitting
+    private static final long ROUNDS_PER_TASK = 1 << 16;
+
+    // The number of rounds evaluated together, see MatrixBatch
+    private static final int BATCH_ROUNDS = 1024;
+
+    private final GameEngine engine;
+
+    // Indexed by symbol id, the index of the symbol in the statistics' bonus symbols or -1
+    private final int[] bonusSymbolIndexes;
+
+    public Simulator(GameConfig config) {
+        this.engine = new GameEngine(config);
+        var symbolTable = config.getSymbolTable();
+        this.bonusSymbolIndexes = new int[symbolTable.size()];
+        Arrays.fill(bonusSymbolIndexes, -1);
+        var bonusSymbols = SimulationStatistics.forConfig(config).getBonusSymbols();
+        for (int i = 0; i < bonusSymbols.length; i++) {
+            var id = symbolTable.getId(bonusSymbols[i]);
+            if (id >= 0) {
+                bonusSymbolIndexes[id] = i;
+            }
+        }
+    }
+
+    /**
+     * Plays the given number of rounds on the common fork-join pool
+     *
+     * @param rounds        The number of rounds to play
+     * @param bettingAmount The betting amount of every round
+     * @param seed          The seed of the root random stream
+     * @return The statistics over all rounds
+     */
+    public SimulationStatistics simulate(long rounds, int bettingAmount, long seed) {
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(rounds, bettingAmount, new SplittableRandom(seed),
+                rounds));
+    }
+
+    /**
+     * Plays rounds sequentially on the calling thread
+     *
+     * @param rounds        The number of rounds to play
+     * @param bettingAmount The betting amount of every round
+     * @param random        The random stream to draw from
+     * @param runRounds     The number of rounds of the whole run these rounds are part of
+     * @return The statistics over the played rounds
+     */
+    public SimulationStatistics playRounds(long rounds, int bettingAmount, SplittableRandom random, long runRounds) {
+        var statistics = SimulationStatistics.forConfig(engine.getConfig());
+        var batch = engine.newBatch(BATCH_ROUNDS, runRounds);
+        var symbolCount = engine.getConfig().getSymbolTable().size();
+        for (long played = 0; played < rounds; played += batch.getSize()) {
+            engine.playBatch(bettingAmount, random, batch, (int) Math.min(BATCH_ROUNDS, rounds - played));
+            for (int lane = 0; lane < batch.getSize(); lane++) {
+                statistics.recordRound(bettingAmount, batch.getReward(lane));
+                for (int id = 0; id < symbolCount; id++) {
+                    long applied = batch.getAppliedCombinations(lane, id);
+                    while (applied != 0) {
+                        statistics.recordCombination(Long.numberOfTrailingZeros(applied));
+                        applied &= applied - 1;
+                    }
+                }
+                for (int cell = 0; cell < batch.getCellCount(); cell++) {
+                    var index = bonusSymbolIndexes[batch.getSymbolId(lane, cell)];
+                    if (index >= 0) {
+                        statistics.recordBonusSymbol(index);
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Splits the rounds in halves until they are small enough to be played by one task
+     */
+    private class SimulationTask extends RecursiveTask<SimulationStatistics> {
+
+        private final long rounds;
+
+        private final int bettingAmount;
+
+        private final SplittableRandom random;
+
+        private final long runRounds;
+
+        SimulationTask(long rounds, int bettingAmount, SplittableRandom random, long runRounds) {
+            this.rounds = rounds;
+            this.bettingAmount = bettingAmount;
+            this.random = random;
+            this.runRounds = runRounds;
+        }
+
+        @Override
+        protected SimulationStatistics compute() {
+            if (rounds <= ROUNDS_PER_TASK) {
+                return playRounds(rounds, bettingAmount, random, runRounds);
+            }
+            var half = rounds / 2;
+            var left = new SimulationTask(half, bettingAmount, random.split(), runRounds);
+            left.fork();
+            var statistics = new SimulationTask(rounds - half, bettingAmount, random, runRounds).compute();
+            statistics.merge(left.join());
+            return statistics;
+        }
+    }
+}
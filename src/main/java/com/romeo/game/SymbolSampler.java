@@ -0,0 +1,275 @@
+package com.romeo.game;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws symbols for the cells of the game matrix in constant time.
+ * <p>
+ * The sampler is compiled once from the configured probabilities. Every cell gets its own alias table
+ * over the standard symbols configured for that cell (cells without an entry use the summed weights of
+ * all configured cells) plus one extra slot carrying the total bonus weight. When the bonus slot is drawn
+ * the symbol is taken from a single shared alias table over the bonus symbols.
+ */
+public class SymbolSampler {
+
+    // Marks the alias slot that delegates to the bonus table
+    private static final int BONUS_SLOT = -1;
+
+    // All symbol names the sampler can produce, indexed by the values returned from sample
+    private final String[] symbols;
+
+    private final int rows;
+
+    private final int columns;
+
+    // Per cell (row * columns + column) alias tables
+    private final AliasTable[] cellTables;
+
+    // The alias table over the bonus symbols, null when no bonus symbols are configured
+    private final AliasTable bonusTable;
+
+    // Per cell integer weight of every symbol, including its share of the bonus slot
+    private final long[][] cellWeights;
+
+    private SymbolSampler(String[] symbols, int rows, int columns, AliasTable[] cellTables, AliasTable bonusTable,
+                          long[][] cellWeights) {
+        this.symbols = symbols;
+        this.rows = rows;
+        this.columns = columns;
+        this.cellTables = cellTables;
+        this.bonusTable = bonusTable;
+        this.cellWeights = cellWeights;
+    }
+
+    /**
+     * Compiles the sampler for a grid of the given size
+     *
+     * @param rows                        The number of rows in the matrix
+     * @param columns                     The number of columns in the matrix
+     * @param standardSymbolProbabilities The configured per cell standard symbol weights
+     * @param bonusSymbolProbabilities    The configured bonus symbol weights
+     * @return The compiled sampler
+     */
+    public static SymbolSampler compile(int rows, int columns, List<Probability> standardSymbolProbabilities,
+                                        Map<String, Integer> bonusSymbolProbabilities) {
+        if (rows <= 0 || columns <= 0) {
+            throw new IllegalArgumentException("Invalid matrix size: " + rows + "x" + columns);
+        }
+        Map<String, Integer> symbolIds = new LinkedHashMap<>();
+
+        Map<String, Integer> defaultWeights = new LinkedHashMap<>();
+        for (Probability probability : standardSymbolProbabilities) {
+            probability.symbolProbabilities.forEach((symbol, weight) -> defaultWeights.merge(symbol, weight, Integer::sum));
+        }
+
+        AliasTable bonusTable = null;
+        long totalBonusWeight = 0;
+        if (!bonusSymbolProbabilities.isEmpty()) {
+            bonusTable = buildTable(bonusSymbolProbabilities, symbolIds, 0);
+            totalBonusWeight = bonusTable.totalWeight;
+        }
+
+        var cellTables = new AliasTable[rows * columns];
+        List<Map<String, Integer>> cellStandardWeights = new ArrayList<>();
+        for (int cell = 0; cell < cellTables.length; cell++) {
+            cellStandardWeights.add(defaultWeights);
+        }
+        for (Probability probability : standardSymbolProbabilities) {
+            if (probability.getRow() < 0 || probability.getRow() >= rows
+                    || probability.getColumn() < 0 || probability.getColumn() >= columns) {
+                throw new IllegalArgumentException("Probability configured outside of the matrix: "
+                        + probability.getRow() + ":" + probability.getColumn());
+            }
+            cellTables[probability.getRow() * columns + probability.getColumn()] =
+                    buildTable(probability.symbolProbabilities, symbolIds, totalBonusWeight);
+            cellStandardWeights.set(probability.getRow() * columns + probability.getColumn(),
+                    probability.symbolProbabilities);
+        }
+
+        AliasTable defaultTable = null;
+        for (int cell = 0; cell < cellTables.length; cell++) {
+            if (cellTables[cell] == null) {
+                if (defaultTable == null) {
+                    defaultTable = buildTable(defaultWeights, symbolIds, totalBonusWeight);
+                }
+                cellTables[cell] = defaultTable;
+            }
+        }
+
+        var cellWeights = new long[cellTables.length][symbolIds.size()];
+        for (int cell = 0; cell < cellTables.length; cell++) {
+            addWeights(cellWeights[cell], cellStandardWeights.get(cell), symbolIds);
+            addWeights(cellWeights[cell], bonusSymbolProbabilities, symbolIds);
+        }
+
+        return new SymbolSampler(symbolIds.keySet().toArray(new String[0]), rows, columns, cellTables, bonusTable,
+                cellWeights);
+    }
+
+    private static void addWeights(long[] target, Map<String, Integer> weights, Map<String, Integer> symbolIds) {
+        weights.forEach((symbol, weight) -> {
+            if (weight > 0) {
+                target[symbolIds.get(symbol)] += weight;
+            }
+        });
+    }
+
+    /**
+     * Draws the symbol for a cell
+     *
+     * @param row    The row of the cell
+     * @param column The column of the cell
+     * @param random The random number generator
+     * @return The index of the drawn symbol, see {@link #getSymbol(int)}
+     */
+    public int sample(int row, int column, RandomGenerator random) {
+        return sample(row * columns + column, random);
+    }
+
+    /**
+     * Draws the symbol for a cell
+     *
+     * @param cell   The cell, row * columns + column
+     * @param random The random number generator
+     * @return The index of the drawn symbol, see {@link #getSymbol(int)}
+     */
+    public int sample(int cell, RandomGenerator random) {
+        int symbol = cellTables[cell].sample(random);
+        return symbol == BONUS_SLOT ? bonusTable.sample(random) : symbol;
+    }
+
+    /**
+     * Returns the name of a symbol produced by {@link #sample(int, int, RandomGenerator)}
+     *
+     * @param index The index of the symbol
+     * @return The symbol name
+     */
+    public String getSymbol(int index) {
+        return symbols[index];
+    }
+
+    /**
+     * Returns the integer weight of every symbol in a cell. A symbol is drawn with its weight divided by
+     * the sum of all weights of the cell.
+     *
+     * @param row    The row of the cell
+     * @param column The column of the cell
+     * @return The weights indexed like the values returned from sample
+     */
+    public long[] getCellWeights(int row, int column) {
+        return cellWeights[row * columns + column].clone();
+    }
+
+    public int getSymbolCount() {
+        return symbols.length;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Builds an alias table from symbol weights, registering every symbol in the shared id map
+     *
+     * @param weights     The symbol weights
+     * @param symbolIds   The shared symbol to index map
+     * @param bonusWeight The weight of the bonus slot, 0 to leave it out
+     * @return The alias table
+     */
+    private static AliasTable buildTable(Map<String, Integer> weights, Map<String, Integer> symbolIds,
+                                         long bonusWeight) {
+        List<Integer> outcomes = new ArrayList<>();
+        List<Long> outcomeWeights = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative probability for symbol: " + entry.getKey());
+            }
+            if (entry.getValue() > 0) {
+                outcomes.add(symbolIds.computeIfAbsent(entry.getKey(), key -> symbolIds.size()));
+                outcomeWeights.add((long) entry.getValue());
+            }
+        }
+        if (bonusWeight > 0) {
+            outcomes.add(BONUS_SLOT);
+            outcomeWeights.add(bonusWeight);
+        }
+        if (outcomes.isEmpty()) {
+            throw new IllegalArgumentException("No symbol with a positive probability: " + weights);
+        }
+        return AliasTable.of(outcomes, outcomeWeights);
+    }
+
+    /**
+     * Walker / Vose alias table drawing an outcome with a single random double
+     */
+    private static final class AliasTable {
+
+        private final int[] outcomes;
+
+        private final int[] aliases;
+
+        private final double[] thresholds;
+
+        private final long totalWeight;
+
+        private AliasTable(int[] outcomes, int[] aliases, double[] thresholds, long totalWeight) {
+            this.outcomes = outcomes;
+            this.aliases = aliases;
+            this.thresholds = thresholds;
+            this.totalWeight = totalWeight;
+        }
+
+        static AliasTable of(List<Integer> outcomeList, List<Long> weights) {
+            int size = outcomeList.size();
+            long total = weights.stream().mapToLong(Long::longValue).sum();
+
+            var outcomes = new int[size];
+            var aliases = new int[size];
+            var thresholds = new double[size];
+            var scaled = new double[size];
+            Deque<Integer> small = new ArrayDeque<>();
+            Deque<Integer> large = new ArrayDeque<>();
+            for (int i = 0; i < size; i++) {
+                outcomes[i] = outcomeList.get(i);
+                scaled[i] = (double) weights.get(i) * size / total;
+                (scaled[i] < 1.0 ? small : large).push(i);
+            }
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int less = small.pop();
+                int more = large.pop();
+                thresholds[less] = scaled[less];
+                aliases[less] = outcomes[more];
+                scaled[more] = scaled[more] + scaled[less] - 1.0;
+                (scaled[more] < 1.0 ? small : large).push(more);
+            }
+            // Whatever is left is 1.0 up to rounding errors
+            while (!large.isEmpty()) {
+                int index = large.pop();
+                thresholds[index] = 1.0;
+                aliases[index] = outcomes[index];
+            }
+            while (!small.isEmpty()) {
+                int index = small.pop();
+                thresholds[index] = 1.0;
+                aliases[index] = outcomes[index];
+            }
+            return new AliasTable(outcomes, aliases, thresholds, total);
+        }
+
+        int sample(RandomGenerator random) {
+            double draw = random.nextDouble() * outcomes.length;
+            int index = Math.min((int) draw, outcomes.length - 1);
+            return draw - index < thresholds[index] ? outcomes[index] : aliases[index];
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.romeo.game;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns the symbols a configuration can draw to small integer ids, the same ids the
+ * {@link SymbolSampler} produces, and keeps everything the round evaluation needs per symbol in flat arrays.
+ * Ids fit in a byte, read back with {@code id & 0xFF}.
+ */
+public class SymbolTable {
+
+    // The maximum number of distinct symbols that fit in a byte id
+    public static final int MAX_SYMBOLS = 256;
+
+    private final String[] names;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private final Symbol[] symbols;
+
+    private final double[] rewardMultipliers;
+
+    private final BonusImpact[] bonusImpacts;
+
+    private final boolean[] miss;
+
+    private final boolean[] appliedBonus;
+
+    /**
+     * Interns the symbols of a sampler
+     *
+     * @param sampler                  The sampler defining the symbol ids
+     * @param symbols                  The configured symbols by name
+     * @param bonusSymbolProbabilities The configured bonus symbol weights
+     */
+    public SymbolTable(SymbolSampler sampler, Map<String, Symbol> symbols,
+                       Map<String, Integer> bonusSymbolProbabilities) {
+        var size = sampler.getSymbolCount();
+        if (size > MAX_SYMBOLS) {
+            throw new IllegalArgumentException("More than " + MAX_SYMBOLS + " symbols configured");
+        }
+        this.names = new String[size];
+        this.symbols = new Symbol[size];
+        this.rewardMultipliers = new double[size];
+        this.bonusImpacts = new BonusImpact[size];
+        this.miss = new boolean[size];
+        this.appliedBonus = new boolean[size];
+        for (int id = 0; id < size; id++) {
+            var name = sampler.getSymbol(id);
+            names[id] = name;
+            ids.put(name, id);
+            this.symbols[id] = symbols.get(name);
+            rewardMultipliers[id] = this.symbols[id] == null ? 0.0 : this.symbols[id].rewardMultiplier;
+            bonusImpacts[id] = BonusImpact.of(this.symbols[id]);
+            miss[id] = name.equals("MISS");
+            appliedBonus[id] = !name.equalsIgnoreCase("MISS") && bonusSymbolProbabilities.containsKey(name);
+        }
+    }
+
+    /**
+     * Returns the id of a symbol
+     *
+     * @param name The symbol name
+     * @return The id, or -1 if the symbol can never be drawn
+     */
+    public int getId(String name) {
+        return ids.getOrDefault(name, -1);
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Returns the configured symbol
+     *
+     * @param id The symbol id
+     * @return The symbol, null if the drawn symbol has no configuration
+     */
+    public Symbol getSymbol(int id) {
+        return symbols[id];
+    }
+
+    public double getRewardMultiplier(int id) {
+        return rewardMultipliers[id];
+    }
+
+    /**
+     * Applies the symbol's bonus impact to a reward
+     *
+     * @param id     The symbol id
+     * @param reward The reward so far
+     * @return The reward after applying the symbol
+     */
+    public int applyBonus(int id, int reward) {
+        return bonusImpacts[id].apply(symbols[id], reward);
+    }
+
+    public BonusImpact getBonusImpact(int id) {
+        return bonusImpacts[id];
+    }
+
+    /**
+     * Whether the symbol is MISS, which never wins same_symbols combinations
+     *
+     * @param id The symbol id
+     * @return true for the MISS symbol
+     */
+    public boolean isMiss(int id) {
+        return miss[id];
+    }
+
+    /**
+     * Whether the symbol is reported as an applied bonus symbol when it appears in the matrix
+     *
+     * @param id The symbol id
+     * @return true for bonus symbols other than MISS
+     */
+    public boolean isAppliedBonus(int id) {
+        return appliedBonus[id];
+    }
+}
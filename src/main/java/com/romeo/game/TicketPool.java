@@ -0,0 +1,298 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A finite pool of pre-generated tickets in a memory-mapped file, built by {@link TicketPoolBuilder}.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte header, followed by one fixed width record per ticket
+ * holding the symbol id of every cell and the payout, then the symbol names and the pool statistics. Tickets are
+ * issued in file order by a cursor kept in the header and advanced atomically in the mapped memory, so issuing
+ * is a single atomic add, tickets are never issued twice and the cursor survives a restart.
+ */
+public class TicketPool implements AutoCloseable {
+
+    static final int HEADER_SIZE = 64;
+
+    // "STKP", the first bytes of every ticket pool
+    static final int MAGIC = 0x53544B50;
+
+    static final int VERSION = 1;
+
+    // Header layout
+    static final int ROWS_OFFSET = 8;
+    static final int COLUMNS_OFFSET = 12;
+    static final int BETTING_AMOUNT_OFFSET = 16;
+    static final int RECORD_SIZE_OFFSET = 20;
+    static final int TICKETS_OFFSET = 24;
+    static final int CONFIG_HASH_OFFSET = 32;
+    static final int SYMBOLS_OFFSET = 40;
+    static final int STATISTICS_OFFSET = 48;
+    static final int CURSOR_OFFSET = 56;
+
+    // Records are mapped in segments of at most 1 GiB so no record straddles two mappings
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private static final VarHandle CURSOR = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer header;
+
+    private final Segments records;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final int bettingAmount;
+
+    private final long tickets;
+
+    private final long configHash;
+
+    private final List<String> symbols;
+
+    private final long totalPaid;
+
+    private final long hits;
+
+    private final int maxPayout;
+
+    private final Map<Integer, Long> prizeTiers;
+
+    private TicketPool(FileChannel channel, MappedByteBuffer header) throws IOException {
+        this.channel = channel;
+        this.header = header;
+        this.rows = header.getInt(ROWS_OFFSET);
+        this.columns = header.getInt(COLUMNS_OFFSET);
+        this.bettingAmount = header.getInt(BETTING_AMOUNT_OFFSET);
+        this.tickets = header.getLong(TICKETS_OFFSET);
+        this.configHash = header.getLong(CONFIG_HASH_OFFSET);
+        this.records = new Segments(channel, FileChannel.MapMode.READ_ONLY, rows * columns + Integer.BYTES, tickets);
+
+        var symbolsOffset = header.getLong(SYMBOLS_OFFSET);
+        var statisticsOffset = header.getLong(STATISTICS_OFFSET);
+        var trailer = channel.map(FileChannel.MapMode.READ_ONLY, symbolsOffset, channel.size() - symbolsOffset);
+        List<String> names = new ArrayList<>();
+        for (int i = trailer.getInt(); i > 0; i--) {
+            var bytes = new byte[trailer.getInt()];
+            trailer.get(bytes);
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        this.symbols = Collections.unmodifiableList(names);
+
+        trailer.position((int) (statisticsOffset - symbolsOffset));
+        this.totalPaid = trailer.getLong();
+        this.hits = trailer.getLong();
+        this.maxPayout = trailer.getInt();
+        Map<Integer, Long> tiers = new LinkedHashMap<>();
+        for (int i = trailer.getInt(); i > 0; i--) {
+            tiers.put(trailer.getInt(), trailer.getLong());
+        }
+        this.prizeTiers = Collections.unmodifiableMap(tiers);
+    }
+
+    /**
+     * Opens a ticket pool for issuing tickets
+     *
+     * @param file The pool file
+     * @return The pool
+     * @throws IOException If the file cannot be opened or is not a ticket pool
+     */
+    public static TicketPool open(Path file) throws IOException {
+        var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is not a ticket pool");
+            }
+            var header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException(file + " is not a ticket pool");
+            }
+            return new TicketPool(channel, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Issues the next ticket of the pool
+     *
+     * @return The ticket number, or -1 if the pool is sold out
+     */
+    public long issue() {
+        var ticket = (long) CURSOR.getAndAdd(header, CURSOR_OFFSET, 1L);
+        return ticket < tickets ? ticket : -1;
+    }
+
+    /**
+     * Returns the number of tickets not issued yet
+     */
+    public long getRemaining() {
+        return Math.max(0, tickets - (long) CURSOR.getVolatile(header, CURSOR_OFFSET));
+    }
+
+    public int getPayout(long ticket) {
+        return records.buffer(ticket).getInt(records.offset(ticket) + rows * columns);
+    }
+
+    /**
+     * Returns the symbol id of a cell of a ticket
+     *
+     * @param ticket The ticket number
+     * @param cell   The cell, row * columns + column
+     * @return The symbol id, an index into {@link #getSymbols()}
+     */
+    public int getSymbolId(long ticket, int cell) {
+        return records.buffer(ticket).get(records.offset(ticket) + cell) & 0xFF;
+    }
+
+    /**
+     * Formats a ticket as a JSON document of its number, matrix and reward
+     *
+     * @param ticket The ticket number
+     * @return The JSON ticket
+     */
+    public String toJson(long ticket) {
+        var json = new StringBuilder(128);
+        json.append("{\n\"ticket\": ").append(ticket).append(",\n\"matrix\": [");
+        for (int row = 0; row < rows; row++) {
+            json.append(row == 0 ? "[" : ", [");
+            for (int column = 0; column < columns; column++) {
+                json.append(column == 0 ? "" : ", ").append(symbols.get(getSymbolId(ticket, row * columns + column)));
+            }
+            json.append(']');
+        }
+        return json.append("],\n\"reward\": ").append(getPayout(ticket)).append("\n}").toString();
+    }
+
+    /**
+     * Formats the pool statistics computed when the pool was built
+     *
+     * @return The JSON report
+     */
+    public String statisticsToJson() {
+        var json = new StringBuilder("{\n");
+        json.append("\"tickets\": ").append(tickets).append(",\n");
+        json.append("\"remaining\": ").append(getRemaining()).append(",\n");
+        json.append("\"betting_amount\": ").append(bettingAmount).append(",\n");
+        json.append("\"total_paid\": ").append(totalPaid).append(",\n");
+        json.append("\"rtp\": ").append(getReturnToPlayer()).append(",\n");
+        json.append("\"hit_frequency\": ").append(tickets == 0 ? 0 : (double) hits / tickets).append(",\n");
+        json.append("\"max_payout\": ").append(maxPayout).append(",\n");
+        json.append("\"prize_tiers\": {");
+        var first = true;
+        for (Map.Entry<Integer, Long> tier : prizeTiers.entrySet()) {
+            json.append(first ? "" : ", ").append('"').append(tier.getKey()).append("\": ").append(tier.getValue());
+            first = false;
+        }
+        return json.append("}\n}").toString();
+    }
+
+    /**
+     * Returns the exact return to player of the whole pool, the total paid divided by the total stakes
+     *
+     * @return The return to player
+     */
+    public double getReturnToPlayer() {
+        return tickets == 0 ? 0 : totalPaid / ((double) tickets * bettingAmount);
+    }
+
+    public long getTickets() {
+        return tickets;
+    }
+
+    public int getBettingAmount() {
+        return bettingAmount;
+    }
+
+    public long getConfigHash() {
+        return configHash;
+    }
+
+    public List<String> getSymbols() {
+        return symbols;
+    }
+
+    public long getTotalPaid() {
+        return totalPaid;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public int getMaxPayout() {
+        return maxPayout;
+    }
+
+    /**
+     * Returns the number of tickets by payout, for every payout above 0
+     */
+    public Map<Integer, Long> getPrizeTiers() {
+        return prizeTiers;
+    }
+
+    @Override
+    public void close() throws IOException {
+        header.force();
+        channel.close();
+    }
+
+    /**
+     * The ticket records of a pool file, mapped in segments
+     */
+    static final class Segments {
+
+        private final int recordSize;
+
+        private final long recordsPerSegment;
+
+        private final MappedByteBuffer[] buffers;
+
+        Segments(FileChannel channel, FileChannel.MapMode mode, int recordSize, long tickets) throws IOException {
+            this.recordSize = recordSize;
+            this.recordsPerSegment = SEGMENT_BYTES / recordSize;
+            this.buffers = new MappedByteBuffer[(int) ((tickets + recordsPerSegment - 1) / recordsPerSegment)];
+            for (int i = 0; i < buffers.length; i++) {
+                var first = i * recordsPerSegment;
+                var count = Math.min(recordsPerSegment, tickets - first);
+                buffers[i] = channel.map(mode, HEADER_SIZE + first * recordSize, count * recordSize);
+            }
+        }
+
+        MappedByteBuffer buffer(long ticket) {
+            return buffers[(int) (ticket / recordsPerSegment)];
+        }
+
+        int offset(long ticket) {
+            return (int) (ticket % recordsPerSegment) * recordSize;
+        }
+
+        int recordSize() {
+            return recordSize;
+        }
+
+        void force() {
+            for (MappedByteBuffer buffer : buffers) {
+                buffer.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.romeo.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+import java.util.stream.LongStream;
+
+/**
+ * Builds a {@link TicketPool} file.
+ * <p>
+ * Tickets are played in parallel in chunks of {@value #CHUNK_TICKETS}, every chunk on its own generator seeded
+ * from the pool seed and the chunk number, and written straight into the mapped file. The pool is then shuffled
+ * in place, so the order tickets are issued in reveals nothing about how they were generated. The same
+ * configuration, betting amount, ticket count and seed always produce the same file. The statistics of the pool
+ * are collected while the tickets are played, so they are exact for the pool rather than estimates.
+ */
+public class TicketPoolBuilder {
+
+    private static final int CHUNK_TICKETS = 1 << 16;
+
+    // The number of tickets evaluated together, see MatrixBatch
+    private static final int BATCH_TICKETS = 1024;
+
+    private final GameEngine engine;
+
+    public TicketPoolBuilder(GameConfig config) {
+        this.engine = new GameEngine(config);
+    }
+
+    /**
+     * Builds a pool, replacing any file at the destination only once the pool is complete
+     *
+     * @param file          The pool file
+     * @param bettingAmount The price of a ticket
+     * @param tickets       The number of tickets
+     * @param seed          The seed of the pool
+     * @return The statistics of the pool as JSON
+     * @throws IOException If the file cannot be written
+     */
+    public String build(Path file, int bettingAmount, long tickets, long seed) throws IOException {
+        if (tickets <= 0) {
+            throw new IllegalArgumentException("A pool needs at least one ticket");
+        }
+        var config = engine.getConfig();
+        var cells = config.getRows() * config.getColumns();
+        var temporary = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".tmp");
+        try {
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var records = new TicketPool.Segments(channel, FileChannel.MapMode.READ_WRITE, cells + Integer.BYTES,
+                        tickets);
+                var randomSource = new RoundRandomSource(RoundRandomSource.DEFAULT_ALGORITHM, seed);
+                var chunks = (tickets + CHUNK_TICKETS - 1) / CHUNK_TICKETS;
+                var statistics = LongStream.range(0, chunks).parallel()
+                        .mapToObj(chunk -> playChunk(records, chunk, bettingAmount,
+                                Math.min(CHUNK_TICKETS, tickets - chunk * CHUNK_TICKETS), tickets,
+                                randomSource.create(randomSource.seedOf(chunk))))
+                        .reduce(new PoolStatistics(), PoolStatistics::merge);
+                shuffle(records, tickets, new SplittableRandom(RoundRandomSource.mix(seed)));
+                records.force();
+                writeHeaderAndTrailer(channel, config, bettingAmount, tickets, records.recordSize(), statistics);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        try (var pool = TicketPool.open(file)) {
+            return pool.statisticsToJson();
+        }
+    }
+
+    private PoolStatistics playChunk(TicketPool.Segments records, long chunk, int bettingAmount, long count,
+                                     long tickets, RandomGenerator random) {
+        var statistics = new PoolStatistics();
+        var batch = engine.newBatch(BATCH_TICKETS, tickets);
+        var cells = batch.getCellCount();
+        for (long played = 0; played < count; played += batch.getSize()) {
+            engine.playBatch(bettingAmount, random, batch, (int) Math.min(BATCH_TICKETS, count - played));
+            for (int lane = 0; lane < batch.getSize(); lane++) {
+                var ticket = chunk * CHUNK_TICKETS + played + lane;
+                var payout = batch.getReward(lane);
+                var buffer = records.buffer(ticket);
+                var offset = records.offset(ticket);
+                for (int cell = 0; cell < cells; cell++) {
+                    buffer.put(offset + cell, (byte) batch.getSymbolId(lane, cell));
+                }
+                buffer.putInt(offset + cells, payout);
+                statistics.record(payout);
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Fisher-Yates shuffle of the ticket records
+     */
+    private static void shuffle(TicketPool.Segments records, long tickets, SplittableRandom random) {
+        var first = new byte[records.recordSize()];
+        var second = new byte[records.recordSize()];
+        for (long i = tickets - 1; i > 0; i--) {
+            var j = random.nextLong(i + 1);
+            if (i == j) {
+                continue;
+            }
+            records.buffer(i).get(records.offset(i), first);
+            records.buffer(j).get(records.offset(j), second);
+            records.buffer(i).put(records.offset(i), second);
+            records.buffer(j).put(records.offset(j), first);
+        }
+    }
+
+    private static void writeHeaderAndTrailer(FileChannel channel, GameConfig config, int bettingAmount, long tickets,
+                                              int recordSize, PoolStatistics statistics) throws IOException {
+        var symbolTable = config.getSymbolTable();
+        var symbolsOffset = TicketPool.HEADER_SIZE + tickets * recordSize;
+        var names = new byte[symbolTable.size()][];
+        var symbolsSize = Integer.BYTES;
+        for (int id = 0; id < names.length; id++) {
+            names[id] = symbolTable.getName(id).getBytes(StandardCharsets.UTF_8);
+            symbolsSize += Integer.BYTES + names[id].length;
+        }
+        var symbols = ByteBuffer.allocate(symbolsSize).putInt(names.length);
+        for (byte[] name : names) {
+            symbols.putInt(name.length).put(name);
+        }
+        symbols.flip();
+        var statisticsOffset = symbolsOffset + symbols.remaining();
+        var trailer = ByteBuffer.allocate(Long.BYTES * 2 + Integer.BYTES * 2
+                + statistics.prizeTiers.size() * (Integer.BYTES + Long.BYTES));
+        trailer.putLong(statistics.totalPaid).putLong(statistics.hits).putInt(statistics.maxPayout)
+                .putInt(statistics.prizeTiers.size());
+        for (Map.Entry<Integer, Long> tier : statistics.prizeTiers.entrySet()) {
+            trailer.putInt(tier.getKey()).putLong(tier.getValue());
+        }
+        trailer.flip();
+
+        var header = ByteBuffer.allocate(TicketPool.HEADER_SIZE);
+        header.putInt(0, TicketPool.MAGIC)
+                .putInt(4, TicketPool.VERSION)
+                .putInt(TicketPool.ROWS_OFFSET, config.getRows())
+                .putInt(TicketPool.COLUMNS_OFFSET, config.getColumns())
+                .putInt(TicketPool.BETTING_AMOUNT_OFFSET, bettingAmount)
+                .putInt(TicketPool.RECORD_SIZE_OFFSET, recordSize)
+                .putLong(TicketPool.TICKETS_OFFSET, tickets)
+                .putLong(TicketPool.CONFIG_HASH_OFFSET, config.getHashPrefix())
+                .putLong(TicketPool.SYMBOLS_OFFSET, symbolsOffset)
+                .putLong(TicketPool.STATISTICS_OFFSET, statisticsOffset)
+                .putLong(TicketPool.CURSOR_OFFSET, 0);
+
+        channel.write(symbols, symbolsOffset);
+        channel.write(trailer, statisticsOffset);
+        channel.write(header, 0);
+        channel.force(true);
+    }
+
+    /**
+     * Mergeable payout statistics of the tickets of one or more chunks
+     */
+    private static final class PoolStatistics {
+
+        private long totalPaid;
+
+        private long hits;
+
+        private int maxPayout;
+
+        private final Map<Integer, Long> prizeTiers = new TreeMap<>();
+
+        void record(int payout) {
+            totalPaid += payout;
+            if (payout > 0) {
+                hits++;
+                maxPayout = Math.max(maxPayout, payout);
+                prizeTiers.merge(payout, 1L, Long::sum);
+            }
+        }
+
+        PoolStatistics merge(PoolStatistics other) {
+            var merged = new PoolStatistics();
+            for (PoolStatistics statistics : new PoolStatistics[]{this, other}) {
+                merged.totalPaid += statistics.totalPaid;
+                merged.hits += statistics.hits;
+                merged.maxPayout = Math.max(merged.maxPayout, statistics.maxPayout);
+                statistics.prizeTiers.forEach((payout, count) -> merged.prizeTiers.merge(payout, count, Long::sum));
+            }
+            return merged;
+        }
+    }
+}
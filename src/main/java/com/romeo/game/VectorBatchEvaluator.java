@@ -0,0 +1,133 @@
+package com.romeo.game;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Evaluates a batch with the Vector API, processing as many rounds per instruction as the widest byte vector holds.
+ * <p>
+ * For every symbol the cell arrays are compared against the symbol id once, giving the symbol's count in every lane
+ * and a bitmask of the lanes holding the symbol per cell. The lanes where the symbol fills a covered area of a
+ * linear combination are then the AND of the bitmasks of its cells, with no further vector operations. Only the
+ * results, which are rare for linear combinations, are moved into the per lane bitsets one lane at a time. An
+ * evaluator belongs to the batch it was created for, so it keeps its working memory between batches.
+ * This class must only be loaded when {@code jdk.incubator.vector} is present, see {@link BatchEvaluator#create}.
+ */
+class VectorBatchEvaluator implements BatchEvaluator {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final WinCombinationEvaluator evaluator;
+
+    private final SymbolTable symbolTable;
+
+    // The ids of the linear combinations
+    private final int[] linearIds;
+
+    // Indexed like linearIds, the smallest symbol count at which the combination is checked
+    private final byte[] linearMinCounts;
+
+    // Indexed like linearIds, then by covered area, the cells of the area
+    private final int[][][] linearAreas;
+
+    // Indexed by cell, the bitmask of the lanes of the current vector holding the current symbol
+    private final long[] symbolLanes;
+
+    // The symbol count of every lane of the current vector
+    private final byte[] counts = new byte[SPECIES.length()];
+
+    VectorBatchEvaluator(GameConfig config) {
+        this.evaluator = config.getWinCombinationEvaluator();
+        this.symbolTable = config.getSymbolTable();
+        var cells = config.getRows() * config.getColumns();
+        this.symbolLanes = new long[cells];
+        var count = 0;
+        for (int id = 0; id < evaluator.getCombinationCount(); id++) {
+            if (evaluator.getAreaMasks(id) != null) {
+                count++;
+            }
+        }
+        this.linearIds = new int[count];
+        this.linearMinCounts = new byte[count];
+        this.linearAreas = new int[count][][];
+        var index = 0;
+        for (int id = 0; id < evaluator.getCombinationCount(); id++) {
+            var areaMasks = evaluator.getAreaMasks(id);
+            if (areaMasks == null) {
+                continue;
+            }
+            linearIds[index] = id;
+            // A count above the matrix size can never be reached, so the combination is never checked
+            var minCount = cells + 1;
+            for (int symbolCount = cells; symbolCount >= WinCombinationEvaluator.MIN_SYMBOL_COUNT; symbolCount--) {
+                if ((evaluator.getLinearCandidates(symbolCount) & (1L << id)) != 0) {
+                    minCount = symbolCount;
+                }
+            }
+            linearMinCounts[index] = (byte) minCount;
+            linearAreas[index] = new int[areaMasks.length][];
+            for (int area = 0; area < areaMasks.length; area++) {
+                var areaCells = new int[Long.bitCount(areaMasks[area])];
+                var mask = areaMasks[area];
+                for (int i = 0; i < areaCells.length; i++) {
+                    areaCells[i] = Long.numberOfTrailingZeros(mask);
+                    mask &= mask - 1;
+                }
+                linearAreas[index][area] = areaCells;
+            }
+            index++;
+        }
+    }
+
+    @Override
+    public void evaluate(MatrixBatch batch) {
+        var cells = batch.cells;
+        var lanes = SPECIES.loopBound(batch.getSize() + SPECIES.length() - 1);
+        for (int id = 0; id < symbolTable.size(); id++) {
+            var symbol = (byte) id;
+            var miss = symbolTable.isMiss(id);
+            var applied = batch.appliedCombinations[id];
+            for (int offset = 0; offset < lanes; offset += SPECIES.length()) {
+                var count = ByteVector.zero(SPECIES);
+                for (int cell = 0; cell < cells.length; cell++) {
+                    var holding = ByteVector.fromArray(SPECIES, cells[cell], offset).eq(symbol);
+                    count = count.add((byte) 1, holding);
+                    symbolLanes[cell] = holding.toLong();
+                }
+                var counted = count.compare(VectorOperators.GE, (byte) WinCombinationEvaluator.MIN_SYMBOL_COUNT);
+                if (!counted.anyTrue()) {
+                    continue;
+                }
+                count.intoArray(counts, 0);
+                var countedLanes = counted.toLong();
+                while (countedLanes != 0) {
+                    var lane = Long.numberOfTrailingZeros(countedLanes);
+                    countedLanes &= countedLanes - 1;
+                    applied[offset + lane] = evaluator.getCountCombinations(counts[lane], miss);
+                }
+                for (int i = 0; i < linearIds.length; i++) {
+                    var candidates = count.compare(VectorOperators.GE, linearMinCounts[i]).toLong();
+                    var winningLanes = 0L;
+                    for (int a = 0; a < linearAreas[i].length && candidates != 0; a++) {
+                        var filled = candidates;
+                        for (int cell : linearAreas[i][a]) {
+                            filled &= symbolLanes[cell];
+                        }
+                        winningLanes |= filled;
+                    }
+                    var bit = 1L << linearIds[i];
+                    while (winningLanes != 0) {
+                        applied[offset + Long.numberOfTrailingZeros(winningLanes)] |= bit;
+                        winningLanes &= winningLanes - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector " + SPECIES.vectorBitSize() + " bit";
+    }
+}
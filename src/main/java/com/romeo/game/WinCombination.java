@@ -8,13 +8,14 @@ public class WinCombination {
     // The reward multiplier associated with this win combination
     public double rewardMultiplier;
 
-    // The count of occurrences required for this win combination
+    // The count of occurrences required for this win combination, the run length or cluster size of a pattern family
     public int count;
 
     // The group to which this win combination belongs
     public String group;
 
-    // Conditions for triggering the win associated with this combination
+    // Conditions for triggering the win associated with this combination: same_symbols, linear_symbols or one of
+    // the pattern families horizontal_run, vertical_run, diagonal_run and cluster, see PatternFamily
     public String when;
 
     // A list of covered areas representing the positions on the scratch card where the win occurs.
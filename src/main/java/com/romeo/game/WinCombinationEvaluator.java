@@ -0,0 +1,433 @@
+package com.romeo.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Win combinations compiled for evaluation against symbol occupancy bitmasks.
+ * <p>
+ * Cells are numbered {@code row * columns + column}, so a symbol's positions in the matrix fit in a single
+ * {@code long} for grids of up to 64 cells (8x8). Larger grids, and grids with {@link PatternFamily} combinations,
+ * are evaluated on a board of one {@code long} per row instead, see {@link #isPacked()}. Applied combinations are
+ * reported as a bitset over the combination ids, which follow the iteration order of the configured combinations.
+ */
+public class WinCombinationEvaluator {
+
+    // The maximum number of cells a matrix may have to be evaluated with long bitmasks
+    public static final int MAX_CELLS = Long.SIZE;
+
+    // The maximum number of rows and columns of a matrix evaluated on a board of one long per row
+    public static final int MAX_ROWS = Long.SIZE;
+    public static final int MAX_COLUMNS = Long.SIZE;
+
+    // The maximum number of win combinations that fit in the applied combinations bitset
+    public static final int MAX_COMBINATIONS = Long.SIZE;
+
+    // A symbol has to appear at least this many times before any combination is checked
+    public static final int MIN_SYMBOL_COUNT = 3;
+
+    private final String[] combinationKeys;
+
+    private final double[] rewardMultipliers;
+
+    private final int rows;
+
+    private final int columns;
+
+    // Indexed by symbol count, the combinations that apply on count alone (same_symbols and friends)
+    private final long[] countCombinations;
+
+    // Same as countCombinations restricted to same_symbols, these never apply to the MISS symbol
+    private final long[] sameSymbolCombinations;
+
+    // Indexed by symbol count, the linear combinations whose count requirement is met
+    private final long[] linearCandidates;
+
+    // Indexed by combination id, the covered areas of linear combinations as cell bitmasks, null on large grids
+    private final long[][] areaMasks;
+
+    // Indexed by combination id, then by covered area, the covered area as one bitmask per row
+    private final long[][][] areaRows;
+
+    // Indexed by symbol count, the pattern family combinations whose count requirement is met
+    private final long[] patternCandidates;
+
+    // Indexed by combination id, the pattern family and its run length or cluster size
+    private final PatternFamily[] patternFamilies;
+    private final int[] patternLengths;
+
+    // The cluster combinations, all decided by a single search for the largest cluster
+    private final long clusterCombinations;
+
+    private final boolean packed;
+
+    private WinCombinationEvaluator(String[] combinationKeys, double[] rewardMultipliers, int rows, int columns,
+                                    long[] countCombinations, long[] sameSymbolCombinations, long[] linearCandidates,
+                                    long[][] areaMasks, long[][][] areaRows, long[] patternCandidates,
+                                    PatternFamily[] patternFamilies, int[] patternLengths) {
+        this.combinationKeys = combinationKeys;
+        this.rewardMultipliers = rewardMultipliers;
+        this.rows = rows;
+        this.columns = columns;
+        this.countCombinations = countCombinations;
+        this.sameSymbolCombinations = sameSymbolCombinations;
+        this.linearCandidates = linearCandidates;
+        this.areaMasks = areaMasks;
+        this.areaRows = areaRows;
+        this.patternCandidates = patternCandidates;
+        this.patternFamilies = patternFamilies;
+        this.patternLengths = patternLengths;
+        long clusters = 0;
+        var patterns = false;
+        for (int id = 0; id < patternFamilies.length; id++) {
+            patterns |= patternFamilies[id] != null;
+            if (patternFamilies[id] == PatternFamily.CLUSTER) {
+                clusters |= 1L << id;
+            }
+        }
+        this.clusterCombinations = clusters;
+        this.packed = rows * columns <= MAX_CELLS && !patterns;
+    }
+
+    /**
+     * Compiles the configured win combinations for a matrix of the given size
+     *
+     * @param rows            The number of rows in the matrix
+     * @param columns         The number of columns in the matrix
+     * @param winCombinations The configured win combinations
+     * @return The compiled evaluator
+     */
+    public static WinCombinationEvaluator compile(int rows, int columns, Map<String, WinCombination> winCombinations) {
+        var cells = rows * columns;
+        if (cells > MAX_CELLS && (rows > MAX_ROWS || columns > MAX_COLUMNS)) {
+            throw new IllegalArgumentException("Matrix of " + rows + "x" + columns + " exceeds " + MAX_ROWS + "x"
+                    + MAX_COLUMNS + " cells");
+        }
+        if (winCombinations.size() > MAX_COMBINATIONS) {
+            throw new IllegalArgumentException("More than " + MAX_COMBINATIONS + " win combinations configured");
+        }
+
+        var combinationKeys = new String[winCombinations.size()];
+        var rewardMultipliers = new double[winCombinations.size()];
+        var countCombinations = new long[cells + 1];
+        var sameSymbolCombinations = new long[cells + 1];
+        var linearCandidates = new long[cells + 1];
+        var areaMasks = new long[winCombinations.size()][];
+        var areaRows = new long[winCombinations.size()][][];
+        var patternCandidates = new long[cells + 1];
+        var patternFamilies = new PatternFamily[winCombinations.size()];
+        var patternLengths = new int[winCombinations.size()];
+
+        int id = 0;
+        for (Map.Entry<String, WinCombination> entry : winCombinations.entrySet()) {
+            var winCombination = entry.getValue();
+            combinationKeys[id] = entry.getKey();
+            rewardMultipliers[id] = winCombination.rewardMultiplier;
+            long bit = 1L << id;
+            var linear = "linear_symbols".equals(winCombination.when);
+            var pattern = PatternFamily.of(winCombination.when);
+            if (linear) {
+                areaRows[id] = compileAreas(entry.getKey(), winCombination.coveredAreas, rows, columns);
+                if (cells <= MAX_CELLS) {
+                    areaMasks[id] = packAreas(areaRows[id], columns);
+                }
+            }
+            if (pattern != null && winCombination.count < MIN_SYMBOL_COUNT) {
+                throw new IllegalArgumentException("The " + winCombination.when + " combination " + entry.getKey()
+                        + " needs a count of at least " + MIN_SYMBOL_COUNT);
+            }
+            patternFamilies[id] = pattern;
+            patternLengths[id] = winCombination.count;
+            for (int count = Math.max(winCombination.count, 0); count <= cells; count++) {
+                if (linear) {
+                    linearCandidates[count] |= bit;
+                } else if (pattern != null) {
+                    patternCandidates[count] |= bit;
+                } else {
+                    countCombinations[count] |= bit;
+                    if ("same_symbols".equals(winCombination.when)) {
+                        sameSymbolCombinations[count] |= bit;
+                    }
+                }
+            }
+            id++;
+        }
+        return new WinCombinationEvaluator(combinationKeys, rewardMultipliers, rows, columns, countCombinations,
+                sameSymbolCombinations, linearCandidates, areaMasks, areaRows, patternCandidates, patternFamilies,
+                patternLengths);
+    }
+
+    /**
+     * Converts the {@code "row:column"} cells of every covered area into one cell bitmask per row
+     */
+    private static long[][] compileAreas(String key, List<List<String>> coveredAreas, int rows, int columns) {
+        var areas = new long[coveredAreas.size()][rows];
+        for (int i = 0; i < areas.length; i++) {
+            for (String cell : coveredAreas.get(i)) {
+                var parts = cell.split(":");
+                int row;
+                int column;
+                try {
+                    row = Integer.parseInt(parts[0].trim());
+                    column = Integer.parseInt(parts[1].trim());
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IllegalArgumentException("Invalid covered area cell '" + cell + "' in " + key, e);
+                }
+                if (row < 0 || row >= rows || column < 0 || column >= columns) {
+                    throw new IllegalArgumentException("Covered area cell '" + cell + "' in " + key
+                            + " is outside of the " + rows + "x" + columns + " matrix");
+                }
+                areas[i][row] |= 1L << column;
+            }
+        }
+        return areas;
+    }
+
+    /**
+     * Packs covered areas given per row into cell bitmasks
+     */
+    private static long[] packAreas(long[][] areas, int columns) {
+        var masks = new long[areas.length];
+        for (int i = 0; i < areas.length; i++) {
+            for (int row = 0; row < areas[i].length; row++) {
+                masks[i] |= areas[i][row] << (row * columns);
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Evaluates the win combinations applied to one symbol, for matrices of up to {@value #MAX_CELLS} cells
+     *
+     * @param occupancy The bitmask of the cells holding the symbol
+     * @param miss      Whether the symbol is the MISS symbol, which never wins same_symbols combinations
+     * @return The bitset of applied combination ids
+     */
+    public long evaluate(long occupancy, boolean miss) {
+        var count = Long.bitCount(occupancy);
+        if (count < MIN_SYMBOL_COUNT) {
+            return 0L;
+        }
+        if (!packed) {
+            var board = new long[getBoardWords()];
+            markAll(board, 0, occupancy);
+            return evaluate(board, 0, count, miss, new long[getScratchSize()]);
+        }
+        long applied = countCombinations[count];
+        if (miss) {
+            applied &= ~sameSymbolCombinations[count];
+        }
+        long candidates = linearCandidates[count];
+        while (candidates != 0) {
+            int id = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            for (long area : areaMasks[id]) {
+                if ((area & occupancy) == area) {
+                    applied |= 1L << id;
+                    break;
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Evaluates the win combinations applied to one symbol on a board of {@link #getBoardWords()} elements,
+     * filled with {@link #mark(long[], int, int)}. Pattern families never apply to the MISS symbol.
+     *
+     * @param boards  The boards of all symbols
+     * @param offset  The index of the symbol's board
+     * @param count   The number of cells holding the symbol
+     * @param miss    Whether the symbol is the MISS symbol
+     * @param scratch At least {@link #getScratchSize()} elements of working memory
+     * @return The bitset of applied combination ids
+     */
+    public long evaluate(long[] boards, int offset, int count, boolean miss, long[] scratch) {
+        if (packed) {
+            return evaluate(boards[offset], miss);
+        }
+        if (count < MIN_SYMBOL_COUNT) {
+            return 0L;
+        }
+        long applied = getCountCombinations(count, miss);
+        long candidates = linearCandidates[count];
+        while (candidates != 0) {
+            int id = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (coversArea(boards, offset, areaRows[id])) {
+                applied |= 1L << id;
+            }
+        }
+        if (miss) {
+            return applied;
+        }
+        long patterns = patternCandidates[count] & ~clusterCombinations;
+        while (patterns != 0) {
+            int id = Long.numberOfTrailingZeros(patterns);
+            patterns &= patterns - 1;
+            if (patternFamilies[id].hasRun(boards, offset, rows, patternLengths[id])) {
+                applied |= 1L << id;
+            }
+        }
+        long clusters = patternCandidates[count] & clusterCombinations;
+        if (clusters != 0) {
+            var enough = 0;
+            for (long remaining = clusters; remaining != 0; remaining &= remaining - 1) {
+                enough = Math.max(enough, patternLengths[Long.numberOfTrailingZeros(remaining)]);
+            }
+            var largest = PatternFamily.largestCluster(boards, offset, rows, count, enough, scratch);
+            while (clusters != 0) {
+                int id = Long.numberOfTrailingZeros(clusters);
+                clusters &= clusters - 1;
+                if (patternLengths[id] <= largest) {
+                    applied |= 1L << id;
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Whether the board covers every cell of at least one of the areas
+     */
+    private boolean coversArea(long[] boards, int offset, long[][] areas) {
+        for (long[] area : areas) {
+            var covered = true;
+            for (int row = 0; row < rows && covered; row++) {
+                covered = (area[row] & boards[offset + row]) == area[row];
+            }
+            if (covered) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks a cell on a symbol's board
+     *
+     * @param boards The boards of all symbols
+     * @param offset The index of the symbol's board
+     * @param cell   The cell, row * columns + column
+     */
+    public void mark(long[] boards, int offset, int cell) {
+        if (packed) {
+            boards[offset] |= 1L << cell;
+        } else {
+            boards[offset + cell / columns] |= 1L << (cell % columns);
+        }
+    }
+
+    /**
+     * Marks every cell of a cell bitmask on a symbol's board
+     */
+    private void markAll(long[] boards, int offset, long occupancy) {
+        while (occupancy != 0) {
+            mark(boards, offset, Long.numberOfTrailingZeros(occupancy));
+            occupancy &= occupancy - 1;
+        }
+    }
+
+    /**
+     * Whether a symbol's positions are evaluated as a single cell bitmask, which is the case for matrices of up to
+     * {@value #MAX_CELLS} cells without pattern family combinations. Otherwise they are evaluated on a board of
+     * one bitmask per row.
+     */
+    public boolean isPacked() {
+        return packed;
+    }
+
+    /**
+     * Returns the number of elements of a symbol's board
+     */
+    public int getBoardWords() {
+        return packed ? 1 : rows;
+    }
+
+    /**
+     * Returns the number of elements of working memory {@link #evaluate(long[], int, int, boolean, long[])} needs
+     */
+    public int getScratchSize() {
+        return clusterCombinations == 0 ? 0 : 2 * rows;
+    }
+
+    /**
+     * Returns the combinations applying on the count of a symbol alone
+     *
+     * @param count The symbol count
+     * @param miss  Whether the symbol is the MISS symbol
+     * @return The bitset of combination ids
+     */
+    long getCountCombinations(int count, boolean miss) {
+        return miss ? countCombinations[count] & ~sameSymbolCombinations[count] : countCombinations[count];
+    }
+
+    /**
+     * Returns the linear combinations to check for a symbol count
+     *
+     * @param count The symbol count
+     * @return The bitset of combination ids
+     */
+    long getLinearCandidates(int count) {
+        return linearCandidates[count];
+    }
+
+    /**
+     * Returns the covered areas of a linear combination
+     *
+     * @param id The combination id
+     * @return The cell bitmask of every covered area, null if the combination is not linear or the matrix has more
+     * than {@value #MAX_CELLS} cells
+     */
+    long[] getAreaMasks(int id) {
+        return areaMasks[id];
+    }
+
+    /**
+     * Converts a bitset of applied combination ids into their configured keys
+     *
+     * @param applied The bitset of applied combination ids
+     * @return The combination keys in id order
+     */
+    public List<String> toCombinationKeys(long applied) {
+        List<String> keys = new ArrayList<>(Long.bitCount(applied));
+        while (applied != 0) {
+            keys.add(combinationKeys[Long.numberOfTrailingZeros(applied)]);
+            applied &= applied - 1;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the configured key of a combination id
+     *
+     * @param id The combination id
+     * @return The combination key
+     */
+    public String getCombinationKey(int id) {
+        return combinationKeys[id];
+    }
+
+    /**
+     * Returns the reward multiplier of a combination id
+     *
+     * @param id The combination id
+     * @return The reward multiplier
+     */
+    public double getRewardMultiplier(int id) {
+        return rewardMultipliers[id];
+    }
+
+    public int getCombinationCount() {
+        return combinationKeys.length;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+}
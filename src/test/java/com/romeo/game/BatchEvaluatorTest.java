@@ -0,0 +1,74 @@
+package com.romeo.game;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that playing rounds in batches gives exactly the rounds {@link GameEngine#play} gives one at a time on the
+ * same seed: the same matrices, applied combinations and rewards.
+ */
+class BatchEvaluatorTest {
+
+    // Several batches, the last one partial
+    private static final int ROUNDS = 20_000;
+
+    // Not a multiple of the lane alignment, so every batch has spare lanes
+    private static final int CAPACITY = 1000;
+
+    private static final int BETTING_AMOUNT = 100;
+
+    private static final long SEED = 42;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"config.json", "grid-8x8.json", "grid-16x16.json"})
+    void scalarBatchesPlayTheRoundsOfSingleRounds(String configFile) {
+        var config = LoadConfigurationFile.loadConfig(configFile);
+        assertSameRounds(config, new ScalarBatchEvaluator(config));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"config.json", "grid-8x8.json"})
+    void vectorBatchesPlayTheRoundsOfSingleRounds(String configFile) {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(),
+                "the JVM runs without jdk.incubator.vector");
+        var config = LoadConfigurationFile.loadConfig(configFile);
+        assertTrue(config.getWinCombinationEvaluator().isPacked(), configFile + " is not packed");
+        assertSameRounds(config, new VectorBatchEvaluator(config));
+    }
+
+    private static void assertSameRounds(GameConfig config, BatchEvaluator evaluator) {
+        var engine = new GameEngine(config);
+        var batch = new MatrixBatch(config, evaluator, CAPACITY);
+        var context = engine.newContext();
+        var batchRandom = new SplittableRandom(SEED);
+        var roundRandom = new SplittableRandom(SEED);
+        var symbols = config.getSymbolTable().size();
+        var winningRounds = 0;
+        for (int played = 0; played < ROUNDS; played += batch.getSize()) {
+            engine.playBatch(BETTING_AMOUNT, batchRandom, batch, Math.min(CAPACITY, ROUNDS - played));
+            for (int lane = 0; lane < batch.getSize(); lane++) {
+                var round = played + lane;
+                var reward = engine.play(BETTING_AMOUNT, roundRandom, context);
+                for (int cell = 0; cell < batch.getCellCount(); cell++) {
+                    assertEquals(context.matrix[cell] & 0xFF, batch.getSymbolId(lane, cell),
+                            "symbol of cell " + cell + " in round " + round);
+                }
+                for (int id = 0; id < symbols; id++) {
+                    assertEquals(context.appliedCombinations[id], batch.getAppliedCombinations(lane, id),
+                            "combinations of symbol " + config.getSymbolTable().getName(id) + " in round " + round);
+                }
+                assertEquals(reward, batch.getReward(lane), "reward of round " + round);
+                if (reward != 0) {
+                    winningRounds++;
+                }
+            }
+        }
+        assertTrue(winningRounds > 0, "no round won, so no reward was compared");
+    }
+}
@@ -0,0 +1,86 @@
+package com.romeo.game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks that a snapshot reads back the configuration it was written from, and that a damaged snapshot is ignored
+ * instead of failing the load
+ */
+class ConfigSnapshotTest {
+
+    // The offset of the length of the first symbol name: magic, version, hash, rows, columns and symbol count
+    private static final int FIRST_STRING_OFFSET = 4 + 4 + 32 + 4 + 4 + 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotReadsBackTheConfiguration() throws IOException {
+        var config = LoadConfigurationFile.loadConfig("grid-16x16.json");
+        var snapshot = new ConfigSnapshot(directory);
+        snapshot.write(config);
+
+        var read = snapshot.read(config.getContentHash());
+        assertNotNull(read);
+        assertEquals(config.getContentHash(), read.getContentHash());
+        assertEquals(config.toJson(), read.toJson());
+        config.getSymbols().forEach((name, symbol) -> {
+            var readSymbol = read.getSymbols().get(name);
+            assertEquals(symbol.rewardMultiplier, readSymbol.rewardMultiplier, name);
+            assertEquals(symbol.getType(), readSymbol.getType(), name);
+            assertEquals(symbol.getExtra(), readSymbol.getExtra(), name);
+            assertEquals(symbol.getImpact(), readSymbol.getImpact(), name);
+        });
+    }
+
+    @Test
+    void snapshotOfAnotherDocumentIsIgnored() throws IOException {
+        var config = LoadConfigurationFile.loadConfig("config.json");
+        var snapshot = new ConfigSnapshot(directory);
+        snapshot.write(config);
+        var otherHash = "0".repeat(64);
+        Files.copy(snapshotFile(config), directory.resolve(otherHash + ".snapshot"));
+
+        assertNull(snapshot.read(otherHash));
+    }
+
+    @Test
+    void corruptStringLengthIsIgnored() throws IOException {
+        var config = LoadConfigurationFile.loadConfig("config.json");
+        var snapshot = new ConfigSnapshot(directory);
+        snapshot.write(config);
+        var file = snapshotFile(config);
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(FIRST_STRING_OFFSET, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+
+        assertNull(snapshot.read(config.getContentHash()));
+    }
+
+    @Test
+    void truncatedSnapshotIsIgnored() throws IOException {
+        var config = LoadConfigurationFile.loadConfig("config.json");
+        var snapshot = new ConfigSnapshot(directory);
+        snapshot.write(config);
+        var file = snapshotFile(config);
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        assertNull(snapshot.read(config.getContentHash()));
+    }
+
+    private Path snapshotFile(GameConfig config) {
+        return directory.resolve(config.getContentHash() + ".snapshot");
+    }
+}
@@ -0,0 +1,85 @@
+package com.romeo.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the exact calculation against every matrix of a 2x2 configuration, evaluated one by one with the rules of
+ * {@link ScratchGameUtility}
+ */
+class ExactRtpCalculatorTest {
+
+    private static final int BETTING_AMOUNT = 100;
+
+    @Test
+    void distributionIsTheOneOfEveryMatrix() {
+        var config = LoadConfigurationFile.loadConfig("grid-2x2.json");
+        var expected = enumerateMatrices(config);
+        var distribution = new ExactRtpCalculator(config).calculate(BETTING_AMOUNT);
+        assertEquals(expected, distribution.getWeights());
+        assertEquals(expected.values().stream().reduce(BigInteger.ZERO, BigInteger::add),
+                distribution.getTotalWeight());
+        // Both the multiplying bonus symbol winning on its own and the truncating multiplier are covered
+        assertTrue(expected.size() > 20, "too few distinct payouts: " + expected.keySet());
+    }
+
+    @Test
+    void momentsAreThoseOfTheDistribution() {
+        var config = LoadConfigurationFile.loadConfig("grid-2x2.json");
+        var calculator = new ExactRtpCalculator(config);
+        var distribution = calculator.calculate(BETTING_AMOUNT);
+        var moments = calculator.calculateMoments(BETTING_AMOUNT);
+        assertEquals(distribution.getReturnToPlayer().doubleValue(), moments.returnToPlayer(),
+                1e-12 * moments.returnToPlayer());
+        assertEquals(distribution.getHitFrequency().doubleValue(), moments.hitFrequency(), 1e-12);
+        assertEquals(distribution.getPayoutVariance().doubleValue(), moments.payoutVariance(),
+                1e-9 * moments.payoutVariance());
+    }
+
+    /**
+     * Weighs the reward of every matrix by the product of the weights of its cells
+     */
+    private static Map<Long, BigInteger> enumerateMatrices(GameConfig config) {
+        var sampler = config.getSymbolSampler();
+        var rows = config.getRows();
+        var columns = config.getColumns();
+        var cells = rows * columns;
+        var symbols = sampler.getSymbolCount();
+        Map<Long, BigInteger> weights = new TreeMap<>();
+        var ids = new int[cells];
+        for (long matrixIndex = 0; matrixIndex < Math.pow(symbols, cells); matrixIndex++) {
+            var rest = matrixIndex;
+            var weight = BigInteger.ONE;
+            for (int cell = 0; cell < cells; cell++) {
+                ids[cell] = (int) (rest % symbols);
+                rest /= symbols;
+                weight = weight.multiply(BigInteger.valueOf(
+                        sampler.getCellWeights(cell / columns, cell % columns)[ids[cell]]));
+            }
+            if (weight.signum() == 0) {
+                continue;
+            }
+            List<List<String>> matrix = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                List<String> symbolRow = new ArrayList<>();
+                for (int column = 0; column < columns; column++) {
+                    symbolRow.add(sampler.getSymbol(ids[row * columns + column]));
+                }
+                matrix.add(symbolRow);
+            }
+            var reward = ScratchGameUtility.calculateStandardSymbolReward(config,
+                    ScratchGameUtility.findAppliedWinningCombinations(config, matrix), BETTING_AMOUNT);
+            reward = ScratchGameUtility.calculateBonusSymbolReward(config, matrix, reward);
+            weights.merge((long) reward, weight, BigInteger::add);
+        }
+        return weights;
+    }
+}
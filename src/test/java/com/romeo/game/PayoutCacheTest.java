@@ -0,0 +1,128 @@
+package com.romeo.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the cached rewards are those of {@link ScratchGameUtility#calculateStandardSymbolReward}, for
+ * multipliers that are not exact in binary and products too large to cache as well as cacheable ones
+ */
+class PayoutCacheTest {
+
+    private static final int ROWS = 2;
+
+    private static final int COLUMNS = 2;
+
+    // Small enough that outcomes keep evicting each other
+    private static final int CAPACITY = 8;
+
+    private static final long SEED = 42;
+
+    private final GameConfig config = config();
+
+    @Test
+    void cachedRewardsAreThoseOfTheReferenceRules() {
+        var cache = new PayoutCache(config, CAPACITY);
+        var symbolTable = config.getSymbolTable();
+        var evaluator = config.getWinCombinationEvaluator();
+        for (int bettingAmount : bettingAmounts()) {
+            for (String symbol : config.getSymbols().keySet()) {
+                var symbolId = symbolTable.getId(symbol);
+                for (long applied = 1; applied < 1L << evaluator.getCombinationCount(); applied++) {
+                    var expected = ScratchGameUtility.calculateStandardSymbolReward(config,
+                            Map.of(symbol, evaluator.toCombinationKeys(applied)), bettingAmount);
+                    var message = symbol + " " + evaluator.toCombinationKeys(applied) + " on " + bettingAmount;
+                    // Once computing the entry and once from it, unless it was evicted in between
+                    assertEquals(expected, cache.reward(symbolId, applied, bettingAmount), message);
+                    assertEquals(expected, cache.reward(symbolId, applied, bettingAmount), message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Every betting amount up to 1000, then random ones up to the largest int
+     */
+    private static List<Integer> bettingAmounts() {
+        List<Integer> bettingAmounts = new ArrayList<>();
+        for (int bettingAmount = 1; bettingAmount <= 1000; bettingAmount++) {
+            bettingAmounts.add(bettingAmount);
+        }
+        var random = new SplittableRandom(SEED);
+        for (int i = 0; i < 1000; i++) {
+            bettingAmounts.add(random.nextInt(1, Integer.MAX_VALUE));
+        }
+        bettingAmounts.add(Integer.MAX_VALUE);
+        return bettingAmounts;
+    }
+
+    private static GameConfig config() {
+        Map<String, Symbol> symbols = new LinkedHashMap<>();
+        symbols.put("A", symbol(0.1));
+        symbols.put("B", symbol(1.1));
+        symbols.put("C", symbol(3.3));
+        symbols.put("D", symbol(5));
+        symbols.put("E", symbol(0.25));
+        // More significant bits than a cached product may have
+        symbols.put("F", symbol((1 << 23) + 1));
+        // Times 5 it is exact, but with too many significant bits to multiply a bet by it exactly
+        symbols.put("I", symbol(1.13));
+        // Overflowing a double once multiplied by a bet
+        symbols.put("G", symbol(1e300));
+        // Brought back down by the last combination, after a bet times it overflowed
+        symbols.put("H", symbol(0x1p1000));
+
+        Map<String, WinCombination> winCombinations = new LinkedHashMap<>();
+        winCombinations.put("same_symbol_3_times", combination(0.1, "same_symbols", 3, "same_symbols"));
+        winCombinations.put("same_symbol_4_times", combination(1.1, "same_symbols", 4, "same_symbols"));
+        winCombinations.put("same_symbols_vertically", linear(3.3, "vertically_linear_symbols",
+                List.of(List.of("0:0", "1:0"), List.of("0:1", "1:1"))));
+        winCombinations.put("same_symbols_horizontally", linear(2, "horizontally_linear_symbols",
+                List.of(List.of("0:0", "0:1"), List.of("1:0", "1:1"))));
+        winCombinations.put("same_symbols_diagonally", linear(5, "ltr_diagonally_linear_symbols",
+                List.of(List.of("0:0", "1:1"))));
+        // Times 3.3 it rounds to exactly 8.25, which a bet times 3.3 times 2.5 may fall short of
+        winCombinations.put("same_symbols_anti_diagonally", linear(2.5, "rtl_diagonally_linear_symbols",
+                List.of(List.of("0:1", "1:0"))));
+        winCombinations.put("same_symbol_2_times", combination(0x1p-1000, "same_symbols", 2, "same_symbols"));
+
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        symbols.keySet().forEach(symbol -> weights.put(symbol, 1));
+        List<Probability> standardSymbolProbabilities = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                standardSymbolProbabilities.add(new Probability(column, row, weights));
+            }
+        }
+        return new GameConfig(ROWS, COLUMNS, symbols, standardSymbolProbabilities, Map.of(), winCombinations);
+    }
+
+    private static Symbol symbol(double rewardMultiplier) {
+        var symbol = new Symbol();
+        symbol.setRewardMultiplier(rewardMultiplier);
+        symbol.setType("standard");
+        return symbol;
+    }
+
+    private static WinCombination combination(double rewardMultiplier, String when, int count, String group) {
+        var winCombination = new WinCombination();
+        winCombination.rewardMultiplier = rewardMultiplier;
+        winCombination.when = when;
+        winCombination.count = count;
+        winCombination.group = group;
+        return winCombination;
+    }
+
+    private static WinCombination linear(double rewardMultiplier, String group, List<List<String>> coveredAreas) {
+        var winCombination = combination(rewardMultiplier, "linear_symbols", 0, group);
+        winCombination.coveredAreas = coveredAreas;
+        return winCombination;
+    }
+}
@@ -0,0 +1,194 @@
+package com.romeo.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks the pattern family combinations on hand-built boards: runs and clusters touching the edges of a row, of
+ * the grid and of the 64 bits of a row, both diagonal directions, and counts exactly at and one below each
+ * threshold
+ */
+class WinCombinationEvaluatorTest {
+
+    private static final String HORIZONTAL = "horizontal_4";
+
+    private static final String VERTICAL = "vertical_4";
+
+    private static final String DIAGONAL = "diagonal_4";
+
+    private static final String CLUSTER = "cluster_5";
+
+    // 16x16, unpacked both for its size and for its pattern families
+    private final WinCombinationEvaluator grid = compile(16, 16);
+
+    // Rows of a full 64 bit word, where shifted cells leave the word instead of wrapping
+    private final WinCombinationEvaluator wide = compile(3, 64);
+
+    @Test
+    void gridsWithPatternFamiliesAreUnpacked() {
+        assertFalse(grid.isPacked());
+        assertFalse(wide.isPacked());
+    }
+
+    @Test
+    void horizontalRunsTouchingTheRowEdgesApply() {
+        assertEquals(List.of(HORIZONTAL), applied(grid, cell(3, 12), cell(3, 13), cell(3, 14), cell(3, 15)));
+        assertEquals(List.of(HORIZONTAL), applied(grid, cell(15, 0), cell(15, 1), cell(15, 2), cell(15, 3)));
+        assertEquals(List.of(HORIZONTAL), applied(wide, cell(1, 60), cell(1, 61), cell(1, 62), cell(1, 63)));
+    }
+
+    @Test
+    void horizontalRunsDoNotContinueIntoTheNextRow() {
+        assertEquals(List.of(), applied(grid, cell(3, 14), cell(3, 15), cell(4, 0), cell(4, 1)));
+        assertEquals(List.of(), applied(wide, cell(0, 62), cell(0, 63), cell(1, 0), cell(1, 1)));
+    }
+
+    @Test
+    void verticalRunsTouchingTheGridEdgesApply() {
+        assertEquals(List.of(VERTICAL), applied(grid, cell(12, 15), cell(13, 15), cell(14, 15), cell(15, 15)));
+        assertEquals(List.of(VERTICAL), applied(grid, cell(0, 0), cell(1, 0), cell(2, 0), cell(3, 0)));
+    }
+
+    @Test
+    void verticalRunsNeedTheSameColumn() {
+        assertEquals(List.of(), applied(grid, cell(0, 5), cell(1, 5), cell(2, 5), cell(3, 6)));
+        // Three rows only hold runs of three
+        assertEquals(List.of(), applied(wide, cell(0, 63), cell(1, 63), cell(2, 63), cell(0, 0)));
+    }
+
+    @Test
+    void diagonalRunsApplyInBothDirections() {
+        // Down and to the right, ending in the bottom right corner
+        assertEquals(List.of(DIAGONAL), applied(grid, cell(12, 12), cell(13, 13), cell(14, 14), cell(15, 15)));
+        // Down and to the left, starting in the top right corner
+        assertEquals(List.of(DIAGONAL), applied(grid, cell(0, 15), cell(1, 14), cell(2, 13), cell(3, 12)));
+        // Down and to the left, ending in the bottom left corner
+        assertEquals(List.of(DIAGONAL), applied(grid, cell(12, 3), cell(13, 2), cell(14, 1), cell(15, 0)));
+    }
+
+    @Test
+    void diagonalRunsDoNotWrapAroundTheRows() {
+        assertEquals(List.of(), applied(grid, cell(0, 14), cell(1, 15), cell(2, 0), cell(3, 1)));
+        assertEquals(List.of(), applied(grid, cell(0, 1), cell(1, 0), cell(2, 15), cell(3, 14)));
+    }
+
+    @Test
+    void diagonalRunsReachTheLastBitOfAWord() {
+        var wideDiagonal = compileWide(DIAGONAL, "diagonal_run", 3);
+        assertEquals(List.of(DIAGONAL), applied(wideDiagonal, cell(0, 61), cell(1, 62), cell(2, 63)));
+        assertEquals(List.of(DIAGONAL), applied(wideDiagonal, cell(0, 63), cell(1, 62), cell(2, 61)));
+        assertEquals(List.of(), applied(wideDiagonal, cell(0, 62), cell(1, 63), cell(2, 0)));
+        assertEquals(List.of(), applied(wideDiagonal, cell(0, 1), cell(1, 0), cell(2, 63)));
+    }
+
+    @Test
+    void clustersSpreadAcrossTheRowWords() {
+        // A snake down the right edge of the grid, one word per row
+        assertEquals(List.of(CLUSTER), applied(grid, cell(0, 15), cell(1, 15), cell(2, 15), cell(2, 14),
+                cell(3, 14)));
+        // The same on the last bit of every word
+        assertEquals(List.of(CLUSTER), applied(wide, cell(0, 63), cell(1, 63), cell(2, 63), cell(2, 62),
+                cell(1, 61), cell(1, 62)));
+        // A cluster whose last cell is only reached back up from the row below
+        assertEquals(List.of(CLUSTER), applied(grid, cell(5, 0), cell(6, 0), cell(6, 1), cell(6, 2), cell(5, 2)));
+    }
+
+    @Test
+    void clustersDoNotJoinTheEndOfARowToTheStartOfTheNext() {
+        assertEquals(List.of(), applied(grid, cell(0, 13), cell(0, 14), cell(0, 15), cell(1, 0), cell(1, 1)));
+        assertEquals(List.of(), applied(wide, cell(0, 61), cell(0, 62), cell(0, 63), cell(1, 0), cell(1, 1)));
+    }
+
+    @Test
+    void clustersDoNotWrapAroundTheirWord() {
+        assertEquals(List.of(), applied(wide, cell(0, 62), cell(0, 63), cell(0, 0), cell(0, 1), cell(1, 0)));
+        assertEquals(List.of(), applied(grid, cell(0, 14), cell(0, 15), cell(0, 0), cell(0, 1), cell(1, 0)));
+    }
+
+    @Test
+    void largestOfSeveralClustersDecides() {
+        assertEquals(List.of(CLUSTER), applied(grid, cell(0, 0), cell(0, 2), cell(9, 9), cell(9, 10), cell(10, 9),
+                cell(10, 10), cell(11, 10)));
+        assertEquals(List.of(), applied(grid, cell(0, 0), cell(0, 1), cell(1, 0), cell(9, 9), cell(9, 10),
+                cell(10, 10), cell(10, 11)));
+    }
+
+    @Test
+    void runsApplyFromExactlyTheirLength() {
+        assertEquals(List.of(HORIZONTAL), applied(grid, cell(7, 4), cell(7, 5), cell(7, 6), cell(7, 7)));
+        assertEquals(List.of(), applied(grid, cell(7, 4), cell(7, 5), cell(7, 6), cell(7, 8)));
+
+        assertEquals(List.of(VERTICAL), applied(grid, cell(4, 7), cell(5, 7), cell(6, 7), cell(7, 7)));
+        assertEquals(List.of(), applied(grid, cell(4, 7), cell(5, 7), cell(6, 7), cell(8, 7)));
+
+        assertEquals(List.of(DIAGONAL), applied(grid, cell(4, 4), cell(5, 5), cell(6, 6), cell(7, 7)));
+        assertEquals(List.of(), applied(grid, cell(4, 4), cell(5, 5), cell(6, 6), cell(8, 8)));
+        assertEquals(List.of(DIAGONAL), applied(grid, cell(4, 7), cell(5, 6), cell(6, 5), cell(7, 4)));
+        assertEquals(List.of(), applied(grid, cell(4, 7), cell(5, 6), cell(6, 5), cell(8, 3)));
+    }
+
+    @Test
+    void clustersApplyFromExactlyTheirSize() {
+        assertEquals(List.of(CLUSTER), applied(grid, cell(2, 2), cell(2, 3), cell(3, 2), cell(3, 3), cell(4, 3)));
+        // Diagonal neighbours are not connected
+        assertEquals(List.of(), applied(grid, cell(2, 2), cell(2, 3), cell(3, 2), cell(3, 3), cell(4, 4)));
+    }
+
+    @Test
+    void missNeverWinsPatternFamilies() {
+        var boards = new long[grid.getBoardWords()];
+        for (int column = 0; column < 6; column++) {
+            grid.mark(boards, 0, column);
+        }
+        assertEquals(0L, grid.evaluate(boards, 0, 6, true, new long[grid.getScratchSize()]));
+    }
+
+    private static WinCombinationEvaluator compile(int rows, int columns) {
+        Map<String, WinCombination> winCombinations = new LinkedHashMap<>();
+        winCombinations.put(HORIZONTAL, pattern("horizontal_run", 4));
+        winCombinations.put(VERTICAL, pattern("vertical_run", 4));
+        winCombinations.put(DIAGONAL, pattern("diagonal_run", 4));
+        winCombinations.put(CLUSTER, pattern("cluster", 5));
+        return WinCombinationEvaluator.compile(rows, columns, winCombinations);
+    }
+
+    /**
+     * Compiles a single pattern family for the 3x64 grid, whose three rows cannot hold runs of four
+     */
+    private static WinCombinationEvaluator compileWide(String key, String when, int count) {
+        return WinCombinationEvaluator.compile(3, 64, Map.of(key, pattern(when, count)));
+    }
+
+    private static WinCombination pattern(String when, int count) {
+        var winCombination = new WinCombination();
+        winCombination.rewardMultiplier = 2;
+        winCombination.when = when;
+        winCombination.count = count;
+        winCombination.group = when;
+        return winCombination;
+    }
+
+    private static int[] cell(int row, int column) {
+        return new int[]{row, column};
+    }
+
+    /**
+     * Marks the cells of one symbol and evaluates them
+     *
+     * @return The keys of the applied combinations
+     */
+    private static List<String> applied(WinCombinationEvaluator evaluator, int[]... cells) {
+        var boards = new long[evaluator.getBoardWords()];
+        for (int[] cell : cells) {
+            evaluator.mark(boards, 0, cell[0] * evaluator.getColumns() + cell[1]);
+        }
+        var applied = evaluator.evaluate(boards, 0, cells.length, false, new long[evaluator.getScratchSize()]);
+        return evaluator.toCombinationKeys(applied);
+    }
+}